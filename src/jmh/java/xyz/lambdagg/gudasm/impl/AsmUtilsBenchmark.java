@@ -0,0 +1,116 @@
+package xyz.lambdagg.gudasm.impl;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import xyz.lambdagg.gudasm.api.v1.AsmUtils;
+import xyz.lambdagg.gudasm.api.v1.match.InsnMatcher;
+import xyz.lambdagg.gudasm.api.v1.type.FieldType;
+import xyz.lambdagg.gudasm.api.v1.type.MethodType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches every method of the corpus with the instruction search helpers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AsmUtilsBenchmark {
+    private static final MethodType STRING_LENGTH = new MethodType(Type.getType(String.class), "length", Type.getMethodType(Type.INT_TYPE));
+    private static final FieldType SYSTEM_OUT = new FieldType(Type.getType(System.class), "out", Type.getType(java.io.PrintStream.class));
+
+    private static final InsnMatcher.Builder BUILDER = InsnMatcher.builder();
+    private static final InsnMatcher.Query<MethodInsnNode> STRING_LENGTH_QUERY = BUILDER.methodCalls(0, Opcodes.INVOKEVIRTUAL, STRING_LENGTH);
+    private static final InsnMatcher.Query<FieldInsnNode> SYSTEM_OUT_QUERY = BUILDER.fieldNodes(0, Opcodes.GETSTATIC, SYSTEM_OUT);
+    private static final InsnMatcher.Query<MethodInsnNode> INVOKESTATIC_QUERY = BUILDER.opcode(Opcodes.INVOKESTATIC);
+    private static final InsnMatcher MATCHER = BUILDER.build();
+
+    /**
+     * Parse the corpus with the symbol table, like the internSymbols option does.
+     */
+    @Param({"false", "true"})
+    public boolean intern;
+
+    private MethodNode[] methods;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<MethodNode> methods = new ArrayList<>();
+        for (ClassNode node : ClassCorpus.parse(intern)) {
+            methods.addAll(node.methods);
+        }
+        this.methods = methods.toArray(new MethodNode[0]);
+    }
+
+    @Benchmark
+    public void findMethodCalls(Blackhole blackhole) {
+        for (MethodNode method : methods) {
+            blackhole.consume(AsmUtils.findMethodCalls(method, 0, Opcodes.INVOKEVIRTUAL, STRING_LENGTH));
+        }
+    }
+
+    @Benchmark
+    public void findMethodCallsIgnoreOwner(Blackhole blackhole) {
+        for (MethodNode method : methods) {
+            blackhole.consume(AsmUtils.findMethodCalls(method, AsmUtils.METHOD_FLAG_IGNORE_OWNER, -1, STRING_LENGTH));
+        }
+    }
+
+    @Benchmark
+    public void findFieldNodes(Blackhole blackhole) {
+        for (MethodNode method : methods) {
+            blackhole.consume(AsmUtils.findFieldNodes(method, 0, Opcodes.GETSTATIC, SYSTEM_OUT));
+        }
+    }
+
+    @Benchmark
+    public void findMatchingNodesByOpcode(Blackhole blackhole) {
+        for (MethodNode method : methods) {
+            blackhole.consume(AsmUtils.findMatchingNodes(method, Opcodes.INVOKESTATIC));
+        }
+    }
+
+    @Benchmark
+    public void findMatchingNodesByType(Blackhole blackhole) {
+        for (MethodNode method : methods) {
+            blackhole.consume(AsmUtils.<FieldInsnNode>findMatchingNodes(method, FieldInsnNode.class));
+        }
+    }
+
+    @Benchmark
+    public void separateSearches(Blackhole blackhole) {
+        for (MethodNode method : methods) {
+            blackhole.consume(AsmUtils.findMethodCalls(method, 0, Opcodes.INVOKEVIRTUAL, STRING_LENGTH));
+            blackhole.consume(AsmUtils.findFieldNodes(method, 0, Opcodes.GETSTATIC, SYSTEM_OUT));
+            blackhole.consume(AsmUtils.findMatchingNodes(method, Opcodes.INVOKESTATIC));
+        }
+    }
+
+    @Benchmark
+    public void batchedSearches(Blackhole blackhole) {
+        for (MethodNode method : methods) {
+            InsnMatcher.Matches matches = MATCHER.match(method);
+            blackhole.consume(matches.get(STRING_LENGTH_QUERY));
+            blackhole.consume(matches.get(SYSTEM_OUT_QUERY));
+            blackhole.consume(matches.get(INVOKESTATIC_QUERY));
+        }
+    }
+
+    @Benchmark
+    public void findMatchingNodesByChecker(Blackhole blackhole) {
+        for (MethodNode method : methods) {
+            blackhole.consume(AsmUtils.<MethodInsnNode>findMatchingNodes(method, (node) -> node instanceof MethodInsnNode && ((MethodInsnNode) node).itf));
+        }
+    }
+}
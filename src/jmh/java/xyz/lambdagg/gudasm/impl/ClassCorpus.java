@@ -0,0 +1,88 @@
+package xyz.lambdagg.gudasm.impl;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import xyz.lambdagg.gudasm.util.InterningClassReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * A fixed set of real classes to benchmark against, taken from the JDK so every run sees the same bytes.
+ */
+final class ClassCorpus {
+    /**
+     * The number of classes in the corpus, for {@code @OperationsPerInvocation}.
+     */
+    static final int SIZE = 20;
+
+    private static final String[] NAMES = {
+            "java.lang.String",
+            "java.lang.Integer",
+            "java.lang.Thread",
+            "java.lang.ClassLoader",
+            "java.lang.invoke.MethodHandles",
+            "java.util.ArrayList",
+            "java.util.HashMap",
+            "java.util.TreeMap",
+            "java.util.Collections",
+            "java.util.Arrays",
+            "java.util.concurrent.ConcurrentHashMap",
+            "java.util.concurrent.ForkJoinPool",
+            "java.util.regex.Pattern",
+            "java.util.stream.ReferencePipeline",
+            "java.io.ObjectInputStream",
+            "java.nio.file.Files",
+            "java.math.BigInteger",
+            "java.text.SimpleDateFormat",
+            "java.time.LocalDateTime",
+            "java.net.URI",
+    };
+
+    static {
+        if (NAMES.length != SIZE) {
+            throw new IllegalStateException("ClassCorpus.SIZE is " + SIZE + " but there are " + NAMES.length + " classes");
+        }
+    }
+
+    private ClassCorpus() {
+    }
+
+    static String[] names() {
+        return NAMES.clone();
+    }
+
+    static byte[][] load() {
+        byte[][] classes = new byte[NAMES.length][];
+        for (int i = 0; i < NAMES.length; i++) {
+            classes[i] = load(NAMES[i]);
+        }
+        return classes;
+    }
+
+    static ClassNode[] parse() {
+        return parse(false);
+    }
+
+    static ClassNode[] parse(boolean intern) {
+        byte[][] classes = load();
+        ClassNode[] nodes = new ClassNode[classes.length];
+        for (int i = 0; i < classes.length; i++) {
+            nodes[i] = new ClassNode();
+            (intern ? new InterningClassReader(classes[i]) : new ClassReader(classes[i])).accept(nodes[i], 0);
+        }
+        return nodes;
+    }
+
+    private static byte[] load(String name) {
+        try (InputStream stream = Object.class.getResourceAsStream('/' + name.replace('.', '/') + ".class")) {
+            if (stream == null) {
+                throw new IllegalStateException("Missing corpus class " + name);
+            }
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package xyz.lambdagg.gudasm.impl;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import xyz.lambdagg.gudasm.api.v1.AsmUtils;
+import xyz.lambdagg.gudasm.util.ConstantPoolScanner;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks for the ForceBootloader annotation on every class of the corpus, the check every loaded class goes through.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ForceBootloaderScanBenchmark {
+    private static final Type FORCE_BOOTLOADER = Type.getObjectType("xyz/lambdagg/gudasm/api/v1/annotation/ForceBootloader");
+    private static final byte[] FORCE_BOOTLOADER_CONSTANT = ConstantPoolScanner.encode(FORCE_BOOTLOADER.getDescriptor());
+
+    private byte[][] classes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        classes = ClassCorpus.load();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ClassCorpus.SIZE)
+    public void parseHeader(Blackhole blackhole) {
+        for (byte[] bytecode : classes) {
+            ClassNode node = new ClassNode();
+            new ClassReader(bytecode).accept(node, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            blackhole.consume(AsmUtils.hasAnnotation(node, FORCE_BOOTLOADER));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ClassCorpus.SIZE)
+    public void scanConstantPool(Blackhole blackhole) {
+        for (byte[] bytecode : classes) {
+            blackhole.consume(ConstantPoolScanner.contains(bytecode, FORCE_BOOTLOADER_CONSTANT));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package xyz.lambdagg.gudasm.impl;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.lambdagg.gudasm.util.Locker;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old locked seen class set against the concurrent one when a lot of threads load classes at once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class SeenClassesBenchmark {
+    private static final int NAMES = 1 << 16;
+
+    private final String[] names = new String[NAMES];
+    private Set<String> lockedSet;
+    private Locker locker;
+    private Set<String> concurrentSet;
+
+    @Setup(Level.Trial)
+    public void setupNames() {
+        for (int i = 0; i < NAMES; i++) {
+            names[i] = "net.minecraft.class_" + i;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setupSets() {
+        lockedSet = new HashSet<>();
+        locker = new Locker();
+        concurrentSet = ConcurrentHashMap.newKeySet();
+    }
+
+    @Benchmark
+    public boolean locked(Cursor cursor) {
+        String name = names[cursor.next()];
+        if (locker.readLock(() -> lockedSet.contains(name))) {
+            return false;
+        }
+        return locker.writeLock(() -> lockedSet.add(name));
+    }
+
+    @Benchmark
+    public boolean concurrent(Cursor cursor) {
+        return concurrentSet.add(names[cursor.next()]);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            index = (int) (Thread.currentThread().getId() * 7919);
+        }
+
+        int next() {
+            return index++ & (NAMES - 1);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package xyz.lambdagg.gudasm.impl;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.transformer.IMixinTransformer;
+import org.spongepowered.asm.mixin.transformer.ext.IExtensionRegistry;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stands in for Mixin, hands every class back untouched like Mixin does for classes without mixins.
+ */
+final class StubMixinTransformer implements IMixinTransformer {
+    @Override
+    public void audit(MixinEnvironment environment) {
+    }
+
+    @Override
+    public List<String> reload(String mixinClass, ClassNode classNode) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean computeFramesForClass(MixinEnvironment environment, String name, ClassNode classNode) {
+        return false;
+    }
+
+    @Override
+    public byte[] transformClassBytes(String name, String transformedName, byte[] basicClass) {
+        return basicClass;
+    }
+
+    @Override
+    public byte[] transformClass(MixinEnvironment environment, String name, byte[] classBytes) {
+        return classBytes;
+    }
+
+    @Override
+    public boolean transformClass(MixinEnvironment environment, String name, ClassNode classNode) {
+        return false;
+    }
+
+    @Override
+    public byte[] generateClass(MixinEnvironment environment, String name) {
+        return null;
+    }
+
+    @Override
+    public boolean generateClass(MixinEnvironment environment, String name, ClassNode classNode) {
+        return false;
+    }
+
+    @Override
+    public IExtensionRegistry getExtensions() {
+        return null;
+    }
+}
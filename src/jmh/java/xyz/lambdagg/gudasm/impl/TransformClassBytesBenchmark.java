@@ -0,0 +1,132 @@
+package xyz.lambdagg.gudasm.impl;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import xyz.lambdagg.gudasm.api.v1.ClassCache;
+import xyz.lambdagg.gudasm.api.v1.Identifier;
+import xyz.lambdagg.gudasm.api.v1.Transformer;
+import xyz.lambdagg.gudasm.util.ClassHash;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the corpus through the whole transformation pipeline with Mixin stubbed out, times are per class.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransformClassBytesBenchmark {
+    private static final int CLASSES = ClassCorpus.names().length;
+
+    /**
+     * What the registered transformer does, "none" doesn't register one at all.
+     */
+    @Param({"none", "read", "write"})
+    public String mode;
+
+    private String[] names;
+    private byte[][] classes;
+    private ASMMixinTransformer transformer;
+    private ASMMixinTransformer cachedTransformer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        names = ClassCorpus.names();
+        classes = ClassCorpus.load();
+
+        List<Transformer> transformers = new ArrayList<>();
+        switch (mode) {
+            case "read" -> transformers.add(new ReadTransformer());
+            case "write" -> transformers.add(new WriteTransformer());
+        }
+        TransformerIndex early = new TransformerIndex(Collections.emptyList());
+        TransformerIndex late = new TransformerIndex(transformers);
+        transformer = new ASMMixinTransformer(new StubMixinTransformer(), early, late);
+
+        MemoryClassCache cache = new MemoryClassCache();
+        cachedTransformer = new ASMMixinTransformer.Cache(new StubMixinTransformer(), early, late, cache);
+        for (int i = 0; i < CLASSES; i++) {
+            cachedTransformer.transformUnseen(names[i], names[i], classes[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ClassCorpus.SIZE)
+    public void transform(Blackhole blackhole) {
+        for (int i = 0; i < CLASSES; i++) {
+            blackhole.consume(transformer.transformUnseen(names[i], names[i], classes[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ClassCorpus.SIZE)
+    public void cacheHit(Blackhole blackhole) {
+        for (int i = 0; i < CLASSES; i++) {
+            blackhole.consume(cachedTransformer.transformUnseen(names[i], names[i], classes[i]));
+        }
+    }
+
+    private static final class ReadTransformer implements Transformer {
+        @Override
+        public Identifier getName() {
+            return new Identifier("gud_asm", "benchmark_read");
+        }
+
+        @Override
+        public boolean transform(ClassNode classNode, Flags flags) {
+            int instructions = 0;
+            for (MethodNode method : classNode.methods) {
+                instructions += method.instructions.size();
+            }
+            return instructions < 0;
+        }
+    }
+
+    private static final class WriteTransformer implements Transformer {
+        @Override
+        public Identifier getName() {
+            return new Identifier("gud_asm", "benchmark_write");
+        }
+
+        @Override
+        public boolean transform(ClassNode classNode, Flags flags) {
+            classNode.fields.add(new FieldNode(Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC, "gudasm$benchmark", "I", null, null));
+            return true;
+        }
+    }
+
+    private static final class MemoryClassCache implements ClassCache {
+        private final Map<ClassHash, byte[]> entries = new HashMap<>();
+
+        @Override
+        public Identifier getName() {
+            return new Identifier("gud_asm", "benchmark");
+        }
+
+        @Override
+        public void load() {
+        }
+
+        @Override
+        public void save() {
+        }
+
+        @Override
+        public Optional<byte[]> getEntry(byte[] original) {
+            return Optional.ofNullable(entries.get(ClassHash.of(original)));
+        }
+
+        @Override
+        public void putEntry(byte[] original, byte[] modified) {
+            entries.put(ClassHash.of(original), modified);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package xyz.lambdagg.gudasm.api.v1;
+
+import xyz.lambdagg.gudasm.impl.MetricsImpl;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Timings of the transformation pipeline, handy for finding out who is slowing down startup.
+ * <p>
+ * Metrics are only collected when "metrics" is enabled in the config, everything reads as zero otherwise.
+ */
+public interface AsmMetrics {
+    /**
+     * Gets the instance of the metrics.
+     *
+     * @return The metrics
+     */
+    static AsmMetrics getInstance() {
+        return MetricsImpl.INSTANCE;
+    }
+
+    /**
+     * Checks if metrics are being collected.
+     *
+     * @return True if enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Gets a snapshot of the stats of every transformer that has run.
+     *
+     * @return The transformer stats
+     */
+    List<TransformerStats> getTransformerStats();
+
+    /**
+     * Gets a snapshot of the stats of a stage of the pipeline.
+     *
+     * @param stage The stage
+     * @return The stats
+     */
+    Stats getStageStats(Stage stage);
+
+    /**
+     * Gets a snapshot of the total time spent on each class, in nanoseconds.
+     *
+     * @return The class times
+     */
+    Map<String, Long> getClassTimes();
+
+    /**
+     * The parts of the pipeline that are timed.
+     */
+    enum Stage {
+        /**
+         * Parsing classes with a ClassReader.
+         */
+        READ,
+        /**
+         * Writing classes with a ClassWriter.
+         */
+        WRITE,
+        /**
+         * The Mixin transformer.
+         */
+        MIXIN,
+        /**
+         * Everything that happens to a class, start to finish.
+         */
+        TOTAL
+    }
+
+    /**
+     * Counts and time of something that was timed.
+     */
+    interface Stats {
+        /**
+         * Gets the number of times this ran.
+         *
+         * @return The count
+         */
+        long getCount();
+
+        /**
+         * Gets the total wall time, in nanoseconds.
+         *
+         * @return The time
+         */
+        long getNanos();
+
+        /**
+         * Gets the number of bytes produced.
+         *
+         * @return The byte count
+         */
+        long getBytes();
+    }
+
+    /**
+     * The stats of a single transformer.
+     */
+    interface TransformerStats extends Stats {
+        /**
+         * Gets the name of the transformer.
+         *
+         * @return The name
+         */
+        Identifier getName();
+
+        /**
+         * Gets the number of classes the transformer changed.
+         *
+         * @return The count
+         */
+        long getModified();
+    }
+}
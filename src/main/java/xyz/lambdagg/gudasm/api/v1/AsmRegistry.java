@@ -33,6 +33,17 @@ public interface AsmRegistry {
      */
     void registerTransformer(Transformer transformer);
 
+    /**
+     * Makes the transformers of one phase run before the transformers of another.
+     * <p>
+     * Phases that are not ordered against each other run in the order they are first seen in.
+     *
+     * @param first  The phase that runs first
+     * @param second The phase that runs second
+     * @see TransformerOrder
+     */
+    void addPhaseOrdering(Identifier first, Identifier second);
+
     /**
      * Registers a class cache.
      *
@@ -17,6 +17,19 @@ public interface ClassCache {
      */
     void load() throws IOException;
 
+    /**
+     * Load the contents of the cache for a fingerprint.
+     * <p>
+     * The fingerprint changes whenever a transformer, the mod that provides it or the active Mixin configs change, so
+     * entries stored under another fingerprint must not be returned by {@link #getEntry(byte[]) getEntry}. By default
+     * this ignores the fingerprint.
+     *
+     * @param fingerprint The fingerprint of the transformers
+     */
+    default void load(long fingerprint) throws IOException {
+        load();
+    }
+
     /**
      * Save the contents of the cache.
      */
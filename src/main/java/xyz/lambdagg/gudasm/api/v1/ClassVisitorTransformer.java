@@ -0,0 +1,135 @@
+package xyz.lambdagg.gudasm.api.v1;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * A transformer that works on a stream of visitor events instead of a tree.
+ * <p>
+ * When every transformer that handles a class is one of these, their visitors get chained together and the class is
+ * read and written once without building a tree. Methods no visitor touches are copied straight from the original
+ * class. If a tree {@link Transformer} handles the class as well the visitors run over its tree instead.
+ * <p>
+ * These are registered like any other transformer.
+ */
+public interface ClassVisitorTransformer extends Transformer {
+    /**
+     * Creates the visitor that transforms a class.
+     * <p>
+     * The visitor has to pass everything it doesn't change on to the next visitor, and has to call
+     * {@link Context#markChanged()} if it changes anything.
+     *
+     * @param next    The next visitor in the chain
+     * @param context The class that is being transformed
+     * @return The visitor, or next if this transformer has nothing to do
+     */
+    @NotNull
+    ClassVisitor createVisitor(@NotNull ClassVisitor next, @NotNull Context context);
+
+    /**
+     * Runs the visitor of this transformer over a tree.
+     * <p>
+     * gudASM doesn't go through this, it is here for anyone running this like a plain {@link Transformer}. The
+     * visitor writes into a new tree, which is copied into the given one if anything changed.
+     */
+    @Override
+    default boolean transform(ClassNode classNode, Flags flags) {
+        String name = classNode.name.replace('/', '.');
+        boolean[] changed = {false};
+        ClassNode result = new ClassNode();
+        classNode.accept(createVisitor(result, new Context() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getTransformedName() {
+                return name;
+            }
+
+            @Override
+            public void markChanged() {
+                changed[0] = true;
+            }
+
+            @Override
+            public void requestMaxes() {
+                flags.requestMaxes();
+            }
+
+            @Override
+            public void requestFrames() {
+                flags.requestFrames();
+            }
+        }));
+        if (changed[0]) {
+            replace(classNode, result);
+        }
+        return changed[0];
+    }
+
+    // ClassNode has no way to reset it, so everything gets cleared before the new tree is visited into it
+    private static void replace(ClassNode target, ClassNode source) {
+        target.sourceFile = null;
+        target.sourceDebug = null;
+        target.module = null;
+        target.outerClass = null;
+        target.outerMethod = null;
+        target.outerMethodDesc = null;
+        target.visibleAnnotations = null;
+        target.invisibleAnnotations = null;
+        target.visibleTypeAnnotations = null;
+        target.invisibleTypeAnnotations = null;
+        target.attrs = null;
+        target.innerClasses.clear();
+        target.nestHostClass = null;
+        target.nestMembers = null;
+        target.permittedSubclasses = null;
+        target.recordComponents = null;
+        target.fields.clear();
+        target.methods.clear();
+        source.accept(target);
+    }
+
+    /**
+     * What a visitor knows about the class it is transforming.
+     */
+    interface Context {
+        /**
+         * Gets the name of the class.
+         *
+         * @return The name of the class
+         */
+        String getName();
+
+        /**
+         * Gets the transformed name of the class.
+         *
+         * @return The transformed name of the class
+         */
+        String getTransformedName();
+
+        /**
+         * Marks the class as changed, the changes are thrown away otherwise.
+         */
+        void markChanged();
+
+        /**
+         * Request that ASM calculate maxes when writing the modified class.
+         * <p>
+         * The writer gets created before the class is read, so this only works from
+         * {@link #createVisitor(ClassVisitor, Context)}.
+         */
+        void requestMaxes();
+
+        /**
+         * Request that ASM calculate frames when writing the modified class.
+         * <p>
+         * The writer gets created before the class is read, so this only works from
+         * {@link #createVisitor(ClassVisitor, Context)}.
+         */
+        void requestFrames();
+    }
+}
@@ -0,0 +1,56 @@
+package xyz.lambdagg.gudasm.api.v1;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * A transformer that changes every method on its own.
+ * <p>
+ * Each method is passed to {@link #transformMethod(ClassNode, MethodNode, Flags)} separately, so for classes with a
+ * lot of methods gudASM splits them up and transforms them on several threads at once. Because of that a method
+ * transformer may only change the method it was given, it can read the class but must not change it or any other
+ * method, and it must not load classes.
+ * <p>
+ * Methods that get transformed are marked as changed automatically. Code is loaded for every method before it gets
+ * here, even if this transformer {@link #readsCodeLazily() reads code lazily}.
+ * <p>
+ * These are registered like any other transformer.
+ */
+public interface MethodTransformer extends Transformer {
+    /**
+     * Transforms a method.
+     * <p>
+     * This can be called from several threads at once for different methods of the same class. The flags only take
+     * effect once every method of the class was transformed.
+     *
+     * @param classNode The class the method is in, must not be changed
+     * @param method    The method that is being transformed
+     * @param flags     Various flags that might be useful
+     * @return True if the method was transformed, false otherwise
+     */
+    boolean transformMethod(ClassNode classNode, MethodNode method, Flags flags);
+
+    /**
+     * Method transformers only change the methods they return true for, so they always report them.
+     */
+    @Override
+    default boolean reportsChangedMethods() {
+        return true;
+    }
+
+    /**
+     * Transforms every method one after the other, gudASM runs big classes on several threads instead.
+     */
+    @Override
+    default boolean transform(ClassNode classNode, Flags flags) {
+        boolean modified = false;
+        for (MethodNode method : classNode.methods) {
+            flags.loadCode(method);
+            if (transformMethod(classNode, method, flags)) {
+                flags.markChanged(method);
+                modified = true;
+            }
+        }
+        return modified;
+    }
+}
@@ -1,6 +1,8 @@
 package xyz.lambdagg.gudasm.api.v1;
 
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
 
 /**
  * The entry point for bytecode transformers.
@@ -13,14 +15,69 @@ public interface Transformer {
      */
     Identifier getName();
 
+    /**
+     * The classes this transformer targets.
+     * <p>
+     * This is checked once when the registry gets frozen, transformers that provide targets are never asked about
+     * any other class. Transformers without targets get asked about every class.
+     *
+     * @return The targets of this transformer, or null to check every class
+     */
+    @Nullable
+    default TransformerTargets getTargets() {
+        return null;
+    }
+
+    /**
+     * Where this transformer runs compared to the others.
+     * <p>
+     * This is checked once when the registry gets frozen.
+     *
+     * @return The order of this transformer
+     */
+    default TransformerOrder getOrder() {
+        return TransformerOrder.getDefault();
+    }
+
     /**
      * A quick check to see if this transformer might handle a class.
+     * <p>
+     * If this transformer has {@link #getTargets() targets} this is only called for classes that match them.
      *
      * @param name            The name of the class
      * @param transformedName The transformed name of the class
      * @return true if the class might get transformed
      */
-    boolean handlesClass(String name, String transformedName);
+    default boolean handlesClass(String name, String transformedName) {
+        return true;
+    }
+
+    /**
+     * Checks if this transformer reports every method it changes.
+     * <p>
+     * A transformer that returns true has to pass every method it changes in any way, including its name, access or
+     * annotations, to {@link Flags#markChanged(MethodNode)}, {@link Flags#requestFrames(MethodNode)} or
+     * {@link Flags#requestMaxes(MethodNode)}. Classes that were only changed by such transformers are written by
+     * copying the untouched methods straight from the original class instead of writing them again.
+     *
+     * @return True if this transformer reports its changed methods
+     */
+    default boolean reportsChangedMethods() {
+        return false;
+    }
+
+    /**
+     * Checks if this transformer can work with a tree that has no method code.
+     * <p>
+     * A transformer that returns true gets a tree where every method is empty until its code is loaded with
+     * {@link Flags#loadCode(MethodNode)}. Methods that never get loaded are copied straight from the original class,
+     * so transformers that only look at a few methods should load just those.
+     *
+     * @return True if this transformer loads the code it needs
+     */
+    default boolean readsCodeLazily() {
+        return false;
+    }
 
     /**
      * Transforms a class.
@@ -44,5 +101,49 @@ public interface Transformer {
          * Request that ASM calculate frames when writing the modified class.
          */
         void requestFrames();
+
+        /**
+         * Loads the code of a method, see {@link Transformer#readsCodeLazily()}.
+         * <p>
+         * Does nothing if the code is already there, the default does nothing at all.
+         *
+         * @param method The method
+         */
+        default void loadCode(MethodNode method) {
+        }
+
+        /**
+         * Marks a method as changed, see {@link Transformer#reportsChangedMethods()}.
+         * <p>
+         * The default does nothing.
+         *
+         * @param method The method that was changed
+         */
+        default void markChanged(MethodNode method) {
+        }
+
+        /**
+         * Request that ASM calculate maxes of a single method when writing the modified class.
+         * <p>
+         * The other methods keep their maxes, prefer this over {@link #requestMaxes()} when only a few methods change.
+         * The default requests maxes for the whole class.
+         *
+         * @param method The method that was changed
+         */
+        default void requestMaxes(MethodNode method) {
+            requestMaxes();
+        }
+
+        /**
+         * Request that ASM calculate frames and maxes of a single method when writing the modified class.
+         * <p>
+         * The other methods keep their frames, prefer this over {@link #requestFrames()} when only a few methods
+         * change. The default requests frames for the whole class.
+         *
+         * @param method The method that was changed
+         */
+        default void requestFrames(MethodNode method) {
+            requestFrames();
+        }
     }
 }
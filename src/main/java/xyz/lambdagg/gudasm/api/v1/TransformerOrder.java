@@ -0,0 +1,140 @@
+package xyz.lambdagg.gudasm.api.v1;
+
+import java.util.*;
+
+/**
+ * Where a {@link Transformer} runs compared to the others.
+ * <p>
+ * Transformers run phase by phase, phases are ordered with {@link AsmRegistry#addPhaseOrdering(Identifier, Identifier)}.
+ * Inside of a phase transformers can ask to run before or after other transformers by name, names of transformers that
+ * are not around are ignored. Anything left open is decided by registration order.
+ * <p>
+ * The order is worked out once when the registry gets frozen, a cycle stops the game from starting.
+ */
+public final class TransformerOrder {
+    /**
+     * The phase of transformers that don't pick one.
+     */
+    public static final Identifier DEFAULT_PHASE = new Identifier("gud_asm", "default");
+
+    private static final TransformerOrder DEFAULT = builder().build();
+
+    private final Identifier phase;
+    private final Set<Identifier> before;
+    private final Set<Identifier> after;
+
+    private TransformerOrder(Identifier phase, Set<Identifier> before, Set<Identifier> after) {
+        this.phase = phase;
+        this.before = Collections.unmodifiableSet(before);
+        this.after = Collections.unmodifiableSet(after);
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the order of a transformer that doesn't care.
+     *
+     * @return The default order
+     */
+    public static TransformerOrder getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Runs a transformer in a phase.
+     *
+     * @param phase The phase
+     * @return The order
+     */
+    public static TransformerOrder inPhase(Identifier phase) {
+        return builder().phase(phase).build();
+    }
+
+    /**
+     * Gets the phase the transformer runs in.
+     *
+     * @return The phase
+     */
+    public Identifier getPhase() {
+        return phase;
+    }
+
+    /**
+     * Gets the transformers this one has to run before.
+     *
+     * @return The transformer names
+     */
+    public Set<Identifier> getBefore() {
+        return before;
+    }
+
+    /**
+     * Gets the transformers this one has to run after.
+     *
+     * @return The transformer names
+     */
+    public Set<Identifier> getAfter() {
+        return after;
+    }
+
+    /**
+     * Builds an order.
+     */
+    public static final class Builder {
+        private final Set<Identifier> before = new LinkedHashSet<>();
+        private final Set<Identifier> after = new LinkedHashSet<>();
+        private Identifier phase = DEFAULT_PHASE;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the phase.
+         *
+         * @param phase The phase
+         * @return This builder
+         */
+        public Builder phase(Identifier phase) {
+            this.phase = Objects.requireNonNull(phase, "phase");
+            return this;
+        }
+
+        /**
+         * Runs before some other transformers.
+         *
+         * @param transformers The names of the transformers
+         * @return This builder
+         */
+        public Builder before(Identifier... transformers) {
+            before.addAll(Arrays.asList(transformers));
+            return this;
+        }
+
+        /**
+         * Runs after some other transformers.
+         *
+         * @param transformers The names of the transformers
+         * @return This builder
+         */
+        public Builder after(Identifier... transformers) {
+            after.addAll(Arrays.asList(transformers));
+            return this;
+        }
+
+        /**
+         * Creates the order.
+         *
+         * @return The order
+         */
+        public TransformerOrder build() {
+            return new TransformerOrder(phase, new LinkedHashSet<>(before), new LinkedHashSet<>(after));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package xyz.lambdagg.gudasm.api.v1;
+
+import org.objectweb.asm.Type;
+
+import java.util.*;
+
+/**
+ * The classes a {@link Transformer} wants to see.
+ * <p>
+ * The registry compiles these into an index when it gets frozen, a transformer is only asked about a class if one of
+ * its targets matches it. Class and package names may use dots or slashes.
+ */
+public final class TransformerTargets {
+    private final Set<String> classes;
+    private final Set<String> packages;
+    private final Set<Type> annotations;
+
+    private TransformerTargets(Set<String> classes, Set<String> packages, Set<Type> annotations) {
+        this.classes = Collections.unmodifiableSet(classes);
+        this.packages = Collections.unmodifiableSet(packages);
+        this.annotations = Collections.unmodifiableSet(annotations);
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Targets a set of classes.
+     *
+     * @param classes The names of the classes
+     * @return The targets
+     */
+    public static TransformerTargets ofClasses(String... classes) {
+        return builder().addClasses(classes).build();
+    }
+
+    /**
+     * Targets every class in a set of packages, including sub-packages.
+     *
+     * @param packages The names of the packages
+     * @return The targets
+     */
+    public static TransformerTargets ofPackages(String... packages) {
+        return builder().addPackages(packages).build();
+    }
+
+    /**
+     * Gets the names of the targeted classes, dot separated.
+     *
+     * @return The class names
+     */
+    public Set<String> getClasses() {
+        return classes;
+    }
+
+    /**
+     * Gets the names of the targeted packages, dot separated.
+     *
+     * @return The package names
+     */
+    public Set<String> getPackages() {
+        return packages;
+    }
+
+    /**
+     * Gets the annotations that make a class a target when they are present on it.
+     *
+     * @return The annotation types
+     */
+    public Set<Type> getAnnotations() {
+        return annotations;
+    }
+
+    /**
+     * Builds a set of targets.
+     */
+    public static final class Builder {
+        private final Set<String> classes = new LinkedHashSet<>();
+        private final Set<String> packages = new LinkedHashSet<>();
+        private final Set<Type> annotations = new LinkedHashSet<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Targets some classes.
+         *
+         * @param classes The names of the classes
+         * @return This builder
+         */
+        public Builder addClasses(String... classes) {
+            for (String name : classes) {
+                this.classes.add(name.replace('/', '.'));
+            }
+            return this;
+        }
+
+        /**
+         * Targets every class in some packages, including sub-packages.
+         *
+         * @param packages The names of the packages
+         * @return This builder
+         */
+        public Builder addPackages(String... packages) {
+            for (String name : packages) {
+                name = name.replace('/', '.');
+                while (name.endsWith(".")) {
+                    name = name.substring(0, name.length() - 1);
+                }
+                this.packages.add(name);
+            }
+            return this;
+        }
+
+        /**
+         * Targets every class that is annotated with any of these annotations.
+         *
+         * @param annotations The annotation types
+         * @return This builder
+         */
+        public Builder addAnnotations(Type... annotations) {
+            this.annotations.addAll(Arrays.asList(annotations));
+            return this;
+        }
+
+        /**
+         * Creates the targets.
+         *
+         * @return The targets
+         */
+        public TransformerTargets build() {
+            return new TransformerTargets(new LinkedHashSet<>(classes), new LinkedHashSet<>(packages), new LinkedHashSet<>(annotations));
+        }
+    }
+}
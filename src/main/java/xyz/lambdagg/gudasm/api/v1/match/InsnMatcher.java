@@ -0,0 +1,294 @@
+package xyz.lambdagg.gudasm.api.v1.match;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.tree.*;
+import xyz.lambdagg.gudasm.api.v1.AsmUtils;
+import xyz.lambdagg.gudasm.api.v1.functional.BooleanFunction;
+import xyz.lambdagg.gudasm.api.v1.type.FieldType;
+import xyz.lambdagg.gudasm.api.v1.type.MethodType;
+import xyz.lambdagg.gudasm.util.AsmUtilsImpl;
+
+import java.util.*;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Runs a batch of instruction searches in a single pass over a method.
+ * <p>
+ * Searches are added to a {@link Builder} up front, each one hands back a {@link Query} that is used to get its
+ * results later. Queries with a known opcode are bucketed by it, so every instruction is only checked against the
+ * queries that could match it. Queries use the same flags as the search methods in {@link AsmUtils}.
+ * <p>
+ * A built matcher never changes and can be shared between threads.
+ */
+public final class InsnMatcher {
+    private static final int[] METHOD_OPCODES = {INVOKEVIRTUAL, INVOKESPECIAL, INVOKESTATIC, INVOKEINTERFACE};
+    private static final int[] FIELD_OPCODES = {GETSTATIC, PUTSTATIC, GETFIELD, PUTFIELD};
+    private static final Query<?>[] NONE = new Query<?>[0];
+
+    private final Query<?>[][] byOpcode = new Query<?>[256][];
+    private final Query<?>[] any;
+    private final Builder owner;
+    private final int size;
+
+    private InsnMatcher(Builder owner, List<Query<?>> queries) {
+        List<List<Query<?>>> buckets = new ArrayList<>(Collections.nCopies(256, null));
+        List<Query<?>> any = new ArrayList<>();
+        for (Query<?> query : queries) {
+            if (query.opcodes == null) {
+                any.add(query);
+                continue;
+            }
+            for (int opcode : query.opcodes) {
+                List<Query<?>> bucket = buckets.get(opcode);
+                if (bucket == null) {
+                    bucket = new ArrayList<>();
+                    buckets.set(opcode, bucket);
+                }
+                bucket.add(query);
+            }
+        }
+        for (int i = 0; i < byOpcode.length; i++) {
+            List<Query<?>> bucket = buckets.get(i);
+            byOpcode[i] = bucket == null ? NONE : bucket.toArray(NONE);
+        }
+        this.any = any.toArray(NONE);
+        this.owner = owner;
+        size = queries.size();
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Runs every query against a method.
+     *
+     * @param method The method to search
+     * @return The matches
+     */
+    @NotNull
+    public Matches match(@NotNull MethodNode method) {
+        return match(method.instructions);
+    }
+
+    /**
+     * Runs every query against an instruction list.
+     *
+     * @param instructions The instructions to search
+     * @return The matches
+     */
+    @NotNull
+    public Matches match(@NotNull InsnList instructions) {
+        Matches matches = new Matches(this);
+        for (AbstractInsnNode instruction = instructions.getFirst(); instruction != null; instruction = instruction.getNext()) {
+            int opcode = instruction.getOpcode();
+            if (opcode >= 0) {
+                for (Query<?> query : byOpcode[opcode]) {
+                    if (query.checker.apply(instruction)) {
+                        matches.add(query, instruction);
+                    }
+                }
+            }
+            for (Query<?> query : any) {
+                if (query.checker.apply(instruction)) {
+                    matches.add(query, instruction);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * A handle to the results of a single search.
+     *
+     * @param <T> The type of the matching nodes
+     */
+    public static final class Query<T extends AbstractInsnNode> {
+        private final Builder owner;
+        private final int index;
+        private final int[] opcodes;
+        private final BooleanFunction<AbstractInsnNode> checker;
+
+        private Query(Builder owner, int index, int[] opcodes, BooleanFunction<AbstractInsnNode> checker) {
+            this.owner = owner;
+            this.index = index;
+            this.opcodes = opcodes;
+            this.checker = checker;
+        }
+    }
+
+    /**
+     * The results of a matcher run.
+     */
+    public static final class Matches {
+        private final InsnMatcher matcher;
+        private final List<?>[] results;
+
+        private Matches(InsnMatcher matcher) {
+            this.matcher = matcher;
+            results = new List<?>[matcher.size];
+        }
+
+        @SuppressWarnings("unchecked")
+        private void add(Query<?> query, AbstractInsnNode instruction) {
+            List<AbstractInsnNode> list = (List<AbstractInsnNode>) results[query.index];
+            if (list == null) {
+                list = new ArrayList<>();
+                results[query.index] = list;
+            }
+            list.add(instruction);
+        }
+
+        /**
+         * Gets the matches of a query, in instruction order.
+         *
+         * @param query The query
+         * @param <T>   The type of the matching nodes
+         * @return The matching nodes
+         */
+        @NotNull
+        @SuppressWarnings("unchecked")
+        public <T extends AbstractInsnNode> List<@NotNull T> get(@NotNull Query<T> query) {
+            if (query.owner != matcher.owner || query.index >= results.length) {
+                throw new IllegalArgumentException("Query does not belong to this matcher");
+            }
+            List<T> result = (List<T>) results[query.index];
+            return result == null ? Collections.emptyList() : result;
+        }
+
+        /**
+         * Checks if a query matched anything.
+         *
+         * @param query The query
+         * @return True if there was at least one match
+         */
+        public boolean has(@NotNull Query<?> query) {
+            return !get(query).isEmpty();
+        }
+    }
+
+    /**
+     * Collects the queries of a matcher.
+     */
+    public static final class Builder {
+        private final List<Query<?>> queries = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        private <T extends AbstractInsnNode> Query<T> add(int[] opcodes, BooleanFunction<AbstractInsnNode> checker) {
+            Query<T> query = new Query<>(this, queries.size(), opcodes, checker);
+            queries.add(query);
+            return query;
+        }
+
+        /**
+         * Searches for method calls.
+         *
+         * @param flags  Flags to control the search
+         * @param opcode Opcode, or -1 if it doesn't matter
+         * @param method The method to search for
+         * @return The query
+         * @throws IllegalArgumentException If the opcode is not a method call opcode
+         */
+        public Query<MethodInsnNode> methodCalls(int flags, int opcode, @NotNull MethodType method) {
+            boolean ignoreOpcode = (flags & AsmUtils.METHOD_FLAG_IGNORE_OPCODE) != 0 || opcode == -1;
+            if (!ignoreOpcode) {
+                checkOpcode(opcode, METHOD_OPCODES, "method call");
+            }
+            return add(ignoreOpcode ? METHOD_OPCODES : new int[]{opcode}, AsmUtilsImpl.getMethodChecker(flags, opcode, method));
+        }
+
+        /**
+         * Searches for field instructions.
+         *
+         * @param flags  Flags to control the search
+         * @param opcode Opcode, or -1 if it doesn't matter
+         * @param field  The field to search for
+         * @return The query
+         * @throws IllegalArgumentException If the opcode is not a field opcode
+         */
+        public Query<FieldInsnNode> fieldNodes(int flags, int opcode, @NotNull FieldType field) {
+            boolean ignoreOpcode = (flags & AsmUtils.FIELD_FLAG_IGNORE_OPCODE) != 0 || opcode == -1;
+            if (!ignoreOpcode) {
+                checkOpcode(opcode, FIELD_OPCODES, "field");
+            }
+            return add(ignoreOpcode ? FIELD_OPCODES : new int[]{opcode}, AsmUtilsImpl.getFieldChecker(flags, opcode, field));
+        }
+
+        private static void checkOpcode(int opcode, int[] opcodes, String kind) {
+            for (int valid : opcodes) {
+                if (opcode == valid) {
+                    return;
+                }
+            }
+            throw new IllegalArgumentException("Invalid " + kind + " opcode " + opcode);
+        }
+
+        /**
+         * Searches for instructions with an opcode.
+         *
+         * @param opcode The instruction opcode
+         * @param <T>    The node type
+         * @return The query
+         */
+        public <T extends AbstractInsnNode> Query<T> opcode(int opcode) {
+            if (opcode < 0 || opcode > 255) {
+                throw new IllegalArgumentException("Invalid opcode " + opcode);
+            }
+            return add(new int[]{opcode}, (node) -> true);
+        }
+
+        /**
+         * Searches for instructions of a node type.
+         *
+         * @param type The node type
+         * @param <T>  The node type
+         * @return The query
+         */
+        public <T extends AbstractInsnNode> Query<T> type(@NotNull Class<T> type) {
+            return add(null, type::isInstance);
+        }
+
+        /**
+         * Searches for instructions that match a checker.
+         *
+         * @param checker The node checker
+         * @param <T>     The type of node the checker looks for
+         * @return The query
+         */
+        public <T extends AbstractInsnNode> Query<T> matching(@NotNull BooleanFunction<@NotNull AbstractInsnNode> checker) {
+            return add(null, checker);
+        }
+
+        /**
+         * Searches for instructions with an opcode that match a checker.
+         *
+         * @param opcode  The instruction opcode
+         * @param checker The node checker
+         * @param <T>     The type of node the checker looks for
+         * @return The query
+         */
+        public <T extends AbstractInsnNode> Query<T> matching(int opcode, @NotNull BooleanFunction<@NotNull AbstractInsnNode> checker) {
+            if (opcode < 0 || opcode > 255) {
+                throw new IllegalArgumentException("Invalid opcode " + opcode);
+            }
+            return add(new int[]{opcode}, checker);
+        }
+
+        /**
+         * Creates the matcher, queries added after this are not part of it.
+         *
+         * @return The matcher
+         */
+        public InsnMatcher build() {
+            return new InsnMatcher(this, new ArrayList<>(queries));
+        }
+    }
+}
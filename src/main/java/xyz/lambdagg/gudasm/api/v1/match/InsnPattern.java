@@ -0,0 +1,547 @@
+package xyz.lambdagg.gudasm.api.v1.match;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.tree.*;
+import xyz.lambdagg.gudasm.api.v1.functional.BooleanFunction;
+import xyz.lambdagg.gudasm.util.Glob;
+
+import java.util.*;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * A pattern of instructions, like a regular expression for bytecode.
+ * <p>
+ * A pattern is a sequence of single instruction elements and gaps. Owners, names and descriptors can contain
+ * {@code *} wildcards, a null or {@code "*"} matches anything. Elements can be captured by name to get the matching
+ * node back. Labels, line numbers and frames are skipped when matching.
+ * <p>
+ * Patterns are compiled into a small state machine that is run over the instructions in one pass, every instruction
+ * is looked at once per active state so a search is linear in the length of the method. Gaps are lazy, they match as
+ * few instructions as they can. A compiled pattern never changes and can be shared between threads.
+ * <pre>{@code
+ * InsnPattern pattern = InsnPattern.builder()
+ *         .field(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;")
+ *         .gap(0, 2)
+ *         .method(INVOKEVIRTUAL, "java/io/PrintStream", "println", "*").capture("print")
+ *         .build();
+ * for (InsnPattern.Match match : pattern.findAll(method)) {
+ *     MethodInsnNode print = match.get("print");
+ * }
+ * }</pre>
+ */
+public final class InsnPattern {
+    private static final int OP_MATCH = 0;
+    private static final int OP_ANY = 1;
+    private static final int OP_SPLIT = 2;
+    private static final int OP_JUMP = 3;
+    private static final int OP_DONE = 4;
+
+    private final int[] ops;
+    private final int[] args;
+    private final int[] args2;
+    private final BooleanFunction<AbstractInsnNode>[] checkers;
+    private final Map<String, Integer> captures;
+
+    private InsnPattern(Program program, Map<String, Integer> captures) {
+        int size = program.ops.size();
+        ops = new int[size];
+        args = new int[size];
+        args2 = new int[size];
+        for (int i = 0; i < size; i++) {
+            ops[i] = program.ops.get(i);
+            args[i] = program.args.get(i);
+            args2[i] = program.args2.get(i);
+        }
+        @SuppressWarnings("unchecked")
+        BooleanFunction<AbstractInsnNode>[] checkers = program.checkers.toArray(new BooleanFunction[0]);
+        this.checkers = checkers;
+        this.captures = Collections.unmodifiableMap(new HashMap<>(captures));
+    }
+
+    /**
+     * Creates a new builder.
+     *
+     * @return The builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Finds every non-overlapping match in a method.
+     *
+     * @param method The method to search
+     * @return The matches in order
+     */
+    @NotNull
+    public List<@NotNull Match> findAll(@NotNull MethodNode method) {
+        return findAll(method.instructions);
+    }
+
+    /**
+     * Finds every non-overlapping match in an instruction list.
+     *
+     * @param instructions The instructions to search
+     * @return The matches in order
+     */
+    @NotNull
+    public List<@NotNull Match> findAll(@NotNull InsnList instructions) {
+        List<Match> matches = new ArrayList<>();
+        Matcher matcher = new Matcher();
+        AbstractInsnNode start = instructions.getFirst();
+        while (start != null) {
+            Match match = matcher.find(start);
+            if (match == null) {
+                break;
+            }
+            matches.add(match);
+            start = match.end.getNext();
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the first match in a method.
+     *
+     * @param method The method to search
+     * @return The match, if any
+     */
+    @NotNull
+    public Optional<Match> findFirst(@NotNull MethodNode method) {
+        return findFirst(method.instructions.getFirst());
+    }
+
+    /**
+     * Finds the first match that starts at or after an instruction.
+     *
+     * @param start The first instruction to look at
+     * @return The match, if any
+     */
+    @NotNull
+    public Optional<Match> findFirst(@Nullable AbstractInsnNode start) {
+        return start == null ? Optional.empty() : Optional.ofNullable(new Matcher().find(start));
+    }
+
+    private static boolean isReal(AbstractInsnNode node) {
+        return node.getOpcode() >= 0;
+    }
+
+    /**
+     * Runs the state machine, one thread per live state like a Pike VM. Threads are kept in priority order so the first
+     * thread that finishes is the preferred match. Capture arrays are shared between threads and only copied when a
+     * thread captures something.
+     */
+    private final class Matcher {
+        private final int[] marks = new int[ops.length];
+        private int generation = 0;
+        private ThreadList current = new ThreadList(ops.length);
+        private ThreadList next = new ThreadList(ops.length);
+
+        private Match find(AbstractInsnNode from) {
+            Match match = null;
+            current.clear();
+            AbstractInsnNode node = from;
+            AbstractInsnNode previous = null;
+            while (true) {
+                while (node != null && !isReal(node)) {
+                    node = node.getNext();
+                }
+
+                // Start a new attempt at this instruction, behind every attempt that started earlier
+                if (match == null) {
+                    generation++;
+                    for (int i = 0; i < current.size; i++) {
+                        marks[current.pcs[i]] = generation;
+                    }
+                    if (node != null) {
+                        add(current, 0, new AbstractInsnNode[captures.size()], node);
+                    }
+                }
+                if (current.size == 0) {
+                    return match;
+                }
+
+                generation++;
+                next.clear();
+                for (int i = 0; i < current.size; i++) {
+                    int pc = current.pcs[i];
+                    int op = ops[pc];
+                    if (op == OP_DONE) {
+                        match = new Match(current.starts[i], previous, current.captures[i]);
+                        // Lower priority threads can't beat this one
+                        break;
+                    } else if (node == null) {
+                        continue;
+                    }
+
+                    if (op == OP_ANY) {
+                        add(next, pc + 1, current.captures[i], current.starts[i]);
+                    } else if (checkers[pc].apply(node)) {
+                        AbstractInsnNode[] captured = current.captures[i];
+                        if (args[pc] >= 0) {
+                            captured = captured.clone();
+                            captured[args[pc]] = node;
+                        }
+                        add(next, pc + 1, captured, current.starts[i]);
+                    }
+                }
+
+                ThreadList swap = current;
+                current = next;
+                next = swap;
+                if (node == null) {
+                    return match;
+                }
+                previous = node;
+                node = node.getNext();
+            }
+        }
+
+        private void add(ThreadList list, int pc, AbstractInsnNode[] captured, AbstractInsnNode start) {
+            if (marks[pc] == generation) {
+                return;
+            }
+            marks[pc] = generation;
+            switch (ops[pc]) {
+                case OP_JUMP:
+                    add(list, args[pc], captured, start);
+                    break;
+                case OP_SPLIT:
+                    add(list, args[pc], captured, start);
+                    add(list, args2[pc], captured, start);
+                    break;
+                default:
+                    list.add(pc, captured, start);
+            }
+        }
+    }
+
+    private static final class ThreadList {
+        private final int[] pcs;
+        private final AbstractInsnNode[][] captures;
+        private final AbstractInsnNode[] starts;
+        private int size;
+
+        private ThreadList(int capacity) {
+            pcs = new int[capacity];
+            captures = new AbstractInsnNode[capacity][];
+            starts = new AbstractInsnNode[capacity];
+        }
+
+        private void add(int pc, AbstractInsnNode[] captured, AbstractInsnNode start) {
+            pcs[size] = pc;
+            captures[size] = captured;
+            starts[size] = start;
+            size++;
+        }
+
+        private void clear() {
+            Arrays.fill(captures, 0, size, null);
+            Arrays.fill(starts, 0, size, null);
+            size = 0;
+        }
+    }
+
+    /**
+     * A single match of a pattern.
+     */
+    public final class Match {
+        private final AbstractInsnNode start;
+        private final AbstractInsnNode end;
+        private final AbstractInsnNode[] captured;
+
+        private Match(AbstractInsnNode start, AbstractInsnNode end, AbstractInsnNode[] captured) {
+            this.start = start;
+            this.end = end;
+            this.captured = captured;
+        }
+
+        /**
+         * Gets the first instruction of the match.
+         *
+         * @return The first instruction
+         */
+        @NotNull
+        public AbstractInsnNode getStart() {
+            return start;
+        }
+
+        /**
+         * Gets the last instruction of the match, inclusive.
+         *
+         * @return The last instruction
+         */
+        @NotNull
+        public AbstractInsnNode getEnd() {
+            return end;
+        }
+
+        /**
+         * Gets a captured instruction.
+         *
+         * @param name The name of the capture
+         * @param <T>  The type of the node
+         * @return The captured node
+         */
+        @NotNull
+        @SuppressWarnings("unchecked")
+        public <T extends AbstractInsnNode> T get(@NotNull String name) {
+            Integer index = captures.get(name);
+            if (index == null) {
+                throw new IllegalArgumentException("Unknown capture " + name);
+            }
+            return (T) captured[index];
+        }
+    }
+
+    private static final class Program {
+        private final List<Integer> ops = new ArrayList<>();
+        private final List<Integer> args = new ArrayList<>();
+        private final List<Integer> args2 = new ArrayList<>();
+        private final List<BooleanFunction<AbstractInsnNode>> checkers = new ArrayList<>();
+
+        private int emit(int op, int arg, int arg2, BooleanFunction<AbstractInsnNode> checker) {
+            ops.add(op);
+            args.add(arg);
+            args2.add(arg2);
+            checkers.add(checker);
+            return ops.size() - 1;
+        }
+
+        private int size() {
+            return ops.size();
+        }
+    }
+
+    /**
+     * Builds a pattern one element at a time.
+     */
+    public static final class Builder {
+        private final List<Element> elements = new ArrayList<>();
+        private final Map<String, Integer> captures = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        private Builder add(BooleanFunction<AbstractInsnNode> checker) {
+            elements.add(new Element(checker, false, 0, 0));
+            return this;
+        }
+
+        /**
+         * Matches any single instruction.
+         *
+         * @return This builder
+         */
+        public Builder any() {
+            return add(null);
+        }
+
+        /**
+         * Matches an instruction by opcode.
+         *
+         * @param opcode The opcode
+         * @return This builder
+         */
+        public Builder opcode(int opcode) {
+            return add((node) -> node.getOpcode() == opcode);
+        }
+
+        /**
+         * Matches a method call.
+         *
+         * @param opcode The opcode, or -1 for any call
+         * @param owner  The owner pattern
+         * @param name   The name pattern
+         * @param desc   The descriptor pattern
+         * @return This builder
+         */
+        public Builder method(int opcode, @Nullable String owner, @Nullable String name, @Nullable String desc) {
+            Glob ownerGlob = Glob.of(owner);
+            Glob nameGlob = Glob.of(name);
+            Glob descGlob = Glob.of(desc);
+            return add((node) -> {
+                if (!(node instanceof MethodInsnNode) || (opcode != -1 && node.getOpcode() != opcode)) {
+                    return false;
+                }
+                MethodInsnNode method = (MethodInsnNode) node;
+                return nameGlob.matches(method.name) && ownerGlob.matches(method.owner) && descGlob.matches(method.desc);
+            });
+        }
+
+        /**
+         * Matches a field instruction.
+         *
+         * @param opcode The opcode, or -1 for any field instruction
+         * @param owner  The owner pattern
+         * @param name   The name pattern
+         * @param desc   The descriptor pattern
+         * @return This builder
+         */
+        public Builder field(int opcode, @Nullable String owner, @Nullable String name, @Nullable String desc) {
+            Glob ownerGlob = Glob.of(owner);
+            Glob nameGlob = Glob.of(name);
+            Glob descGlob = Glob.of(desc);
+            return add((node) -> {
+                if (!(node instanceof FieldInsnNode) || (opcode != -1 && node.getOpcode() != opcode)) {
+                    return false;
+                }
+                FieldInsnNode field = (FieldInsnNode) node;
+                return nameGlob.matches(field.name) && ownerGlob.matches(field.owner) && descGlob.matches(field.desc);
+            });
+        }
+
+        /**
+         * Matches a type instruction, like NEW or CHECKCAST.
+         *
+         * @param opcode The opcode, or -1 for any type instruction
+         * @param type   The internal name pattern
+         * @return This builder
+         */
+        public Builder type(int opcode, @Nullable String type) {
+            Glob typeGlob = Glob.of(type);
+            return add((node) -> node instanceof TypeInsnNode &&
+                    (opcode == -1 || node.getOpcode() == opcode) &&
+                    typeGlob.matches(((TypeInsnNode) node).desc));
+        }
+
+        /**
+         * Matches a local variable instruction.
+         *
+         * @param opcode The opcode, or -1 for any variable instruction
+         * @param index  The variable index, or -1 for any variable
+         * @return This builder
+         */
+        public Builder var(int opcode, int index) {
+            return add((node) -> node instanceof VarInsnNode &&
+                    (opcode == -1 || node.getOpcode() == opcode) &&
+                    (index == -1 || ((VarInsnNode) node).var == index));
+        }
+
+        /**
+         * Matches an LDC of a constant.
+         *
+         * @param value The constant
+         * @return This builder
+         */
+        public Builder ldc(@NotNull Object value) {
+            return add((node) -> node.getOpcode() == LDC && value.equals(((LdcInsnNode) node).cst));
+        }
+
+        /**
+         * Matches an instruction with a custom checker.
+         *
+         * @param checker The checker
+         * @return This builder
+         */
+        public Builder matching(@NotNull BooleanFunction<@NotNull AbstractInsnNode> checker) {
+            return add(checker);
+        }
+
+        /**
+         * Captures the instruction matched by the last element.
+         *
+         * @param name The name of the capture
+         * @return This builder
+         */
+        public Builder capture(@NotNull String name) {
+            if (elements.isEmpty() || elements.get(elements.size() - 1).gap) {
+                throw new IllegalStateException("Only single instructions can be captured");
+            }
+            if (captures.containsKey(name)) {
+                throw new IllegalArgumentException("Duplicate capture " + name);
+            }
+            captures.put(name, captures.size());
+            elements.get(elements.size() - 1).capture = captures.get(name);
+            return this;
+        }
+
+        /**
+         * Skips any number of instructions.
+         *
+         * @return This builder
+         */
+        public Builder gap() {
+            return gap(0, -1);
+        }
+
+        /**
+         * Skips some instructions.
+         *
+         * @param min The least instructions to skip
+         * @param max The most instructions to skip, or -1 for no limit
+         * @return This builder
+         */
+        public Builder gap(int min, int max) {
+            if (min < 0 || (max != -1 && max < min)) {
+                throw new IllegalArgumentException("Invalid gap " + min + ".." + max);
+            }
+            elements.add(new Element(null, true, min, max));
+            return this;
+        }
+
+        /**
+         * Compiles the pattern.
+         *
+         * @return The pattern
+         */
+        public InsnPattern build() {
+            if (elements.stream().allMatch((element) -> element.gap)) {
+                throw new IllegalStateException("A pattern needs at least one instruction");
+            }
+
+            Program program = new Program();
+            for (Element element : elements) {
+                if (!element.gap) {
+                    if (element.checker == null && element.capture == -1) {
+                        program.emit(OP_ANY, -1, 0, null);
+                    } else {
+                        program.emit(OP_MATCH, element.capture, 0, element.checker == null ? (node) -> true : element.checker);
+                    }
+                    continue;
+                }
+
+                for (int i = 0; i < element.min; i++) {
+                    program.emit(OP_ANY, -1, 0, null);
+                }
+                if (element.max == -1) {
+                    // loop: prefer leaving, otherwise eat one and come back
+                    int split = program.emit(OP_SPLIT, 0, 0, null);
+                    program.emit(OP_ANY, -1, 0, null);
+                    program.emit(OP_JUMP, split, 0, null);
+                    program.args.set(split, program.size());
+                    program.args2.set(split, split + 1);
+                } else {
+                    List<Integer> splits = new ArrayList<>();
+                    for (int i = element.min; i < element.max; i++) {
+                        splits.add(program.emit(OP_SPLIT, 0, 0, null));
+                        program.emit(OP_ANY, -1, 0, null);
+                    }
+                    for (int split : splits) {
+                        program.args.set(split, program.size());
+                        program.args2.set(split, split + 1);
+                    }
+                }
+            }
+            program.emit(OP_DONE, 0, 0, null);
+            return new InsnPattern(program, captures);
+        }
+    }
+
+    private static final class Element {
+        private final BooleanFunction<AbstractInsnNode> checker;
+        private final boolean gap;
+        private final int min;
+        private final int max;
+        private int capture = -1;
+
+        private Element(BooleanFunction<AbstractInsnNode> checker, boolean gap, int min, int max) {
+            this.checker = checker;
+            this.gap = gap;
+            this.min = min;
+            this.max = max;
+        }
+    }
+}
@@ -1,96 +1,85 @@
 package xyz.lambdagg.gudasm.impl;
 
-import net.fabricmc.loader.api.FabricLoader;
 import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 import org.spongepowered.asm.mixin.MixinEnvironment;
 import org.spongepowered.asm.mixin.transformer.IMixinTransformer;
 import org.spongepowered.asm.mixin.transformer.ext.IExtensionRegistry;
+import xyz.lambdagg.gudasm.api.v1.AsmMetrics;
 import xyz.lambdagg.gudasm.api.v1.AsmUtils;
 import xyz.lambdagg.gudasm.api.v1.ClassCache;
+import xyz.lambdagg.gudasm.api.v1.ClassVisitorTransformer;
+import xyz.lambdagg.gudasm.api.v1.MethodTransformer;
 import xyz.lambdagg.gudasm.api.v1.Transformer;
-import xyz.lambdagg.gudasm.util.Locker;
-
-import java.io.IOException;
-import java.io.OutputStream;
-import java.lang.invoke.MethodHandle;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-import java.security.ProtectionDomain;
+import xyz.lambdagg.gudasm.util.ClassHash;
+import xyz.lambdagg.gudasm.util.ConstantPoolScanner;
+import xyz.lambdagg.gudasm.util.PackageSet;
+
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 /**
  * Our custom "mixin" transformer.
  */
 public class ASMMixinTransformer implements IMixinTransformer {
-    public static final Set<String> BLACKLIST = new HashSet<>(Arrays.asList(
+    public static final PackageSet BLACKLIST = new PackageSet(
             "net.gudenau.minecraft.asm.",
             "org.objectweb.asm.",
             "com.google.gson.",
             "org.lwjgl.",
             "it.unimi.dsi.fastutil."
-    ));
+    );
 
     private static final Type ANNOTATION_FORCE_BOOTLOADER = Type.getObjectType("xyz/lambdagg/gudasm/api/v1/annotation/ForceBootloader");
 
+    private static final byte[] FORCE_BOOTLOADER_CONSTANT = ConstantPoolScanner.encode(ANNOTATION_FORCE_BOOTLOADER.getDescriptor());
+
     private static final Transformer BOOTSTRAP_TRANSFORMER = new BootstrapTransformer();
 
-    private static final MethodHandle ClassLoader$defineClass;
-    private static final ExecutorService DUMP_SERVICE = Executors.newFixedThreadPool(1);
     private static ClassLoader classLoader;
 
-    static {
-        try {
-            ClassLoader$defineClass = ReflectionHelper.findStatic(
-                    ClassLoader.class,
-                    "defineClass1",
-                    Class.class,
-                    ClassLoader.class, String.class, byte[].class, int.class, int.class, ProtectionDomain.class, String.class
-            );
-        } catch (ReflectiveOperationException e) {
-            new RuntimeException("Failed to get ClassLoader.defineClass1", e).printStackTrace();
-            System.exit(0);
-            // Unreachable, makes javac happy
-            throw new RuntimeException("Failed to get ClassLoader.defineClass1", e);
-        }
-    }
-
-    static {
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            DUMP_SERVICE.shutdown();
-            try {
-                DUMP_SERVICE.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
-            } catch (InterruptedException ignored) {
-            }
-        }, "gudASM Dumper Service Cleanup"));
-    }
-
-    private final Set<String> seenClasses = new HashSet<>();
-    private final Locker seenClassesLocker = new Locker();
+    private final Set<String> seenClasses = ConcurrentHashMap.newKeySet();
+    private final BootloaderInjector injector = new BootloaderInjector(this);
     private final IMixinTransformer parent;
-    private final List<Transformer> transformers;
-    private final List<Transformer> earlyTransformers;
+    private final TransformerIndex transformers;
+    private final TransformerIndex earlyTransformers;
     private final boolean forceDump = Configuration.DUMP.get() == Configuration.DumpMode.FORCE;
     private final boolean dump = Configuration.DUMP.get() == Configuration.DumpMode.ON || forceDump;
+    private final DumpFilter dumpFilter = dump ? DumpFilter.fromConfig() : null;
+    private final byte[][] targetedConstants;
+    private volatile ClassWarmup warmup;
 
     ASMMixinTransformer(IMixinTransformer parent) {
+        this(parent, RegistryImpl.INSTANCE.getEarlyTransformerIndex(), RegistryImpl.INSTANCE.getTransformerIndex());
+    }
+
+    ASMMixinTransformer(IMixinTransformer parent, TransformerIndex earlyTransformers, TransformerIndex transformers) {
         this.parent = parent;
-        transformers = RegistryImpl.INSTANCE.getTransformers();
-        earlyTransformers = RegistryImpl.INSTANCE.getEarlyTransformers();
+        this.earlyTransformers = earlyTransformers;
+        this.transformers = transformers;
+
+        // A class with none of these strings in its constant pool can't have an annotation anyone is after
+        Set<String> descriptors = new HashSet<>();
+        descriptors.add(ANNOTATION_FORCE_BOOTLOADER.getDescriptor());
+        descriptors.addAll(earlyTransformers.getTargetAnnotations());
+        descriptors.addAll(transformers.getTargetAnnotations());
+        targetedConstants = new byte[descriptors.size()][];
+        int index = 0;
+        for (String descriptor : descriptors) {
+            targetedConstants[index++] = ConstantPoolScanner.encode(descriptor);
+        }
     }
 
     public static void setClassLoader(ClassLoader classLoader) {
         ASMMixinTransformer.classLoader = classLoader;
     }
 
+    static ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
     @Override
     public void audit(MixinEnvironment environment) {
         this.parent.audit(environment);
@@ -108,63 +97,170 @@ public class ASMMixinTransformer implements IMixinTransformer {
 
     @Override
     public byte[] transformClassBytes(String name, String transformedName, byte[] basicClass) {
-        if (seenClassesLocker.readLock(() -> seenClasses.contains(name))) {
-            return basicClass;
-        }
-        if (seenClassesLocker.writeLock(() -> {
-            if (seenClasses.contains(name)) {
-                return true;
-            } else {
-                seenClasses.add(name);
-                return false;
-            }
-        })) {
-            return parent.transformClassBytes(name, transformedName, basicClass);
+        // Only the first load of a class gets transformed
+        if (!seenClasses.add(name)) {
+            // Supertypes of bootloader classes get transformed before Knot asks for them
+            return injector.getResult(name, basicClass);
         }
+        return transformUnseen(name, transformedName, basicClass);
+    }
 
-        for (String prefix : BLACKLIST) {
-            if (name.startsWith(prefix)) {
-                byte[] transformedClass = parent.transformClassBytes(name, transformedName, basicClass);
-                if (forceDump) {
-                    dump(name, basicClass);
-                }
-                return bootstrap(cache(basicClass, () -> transformedClass));
+    /**
+     * Transforms a class that the class loader did not ask for before.
+     *
+     * @param name            The name of the class
+     * @param transformedName The transformed name of the class
+     * @param basicClass      The original class
+     * @return The transformed class, or null if it went to the bootstrap class loader
+     */
+    byte[] transformUnseen(String name, String transformedName, byte[] basicClass) {
+        if (BLACKLIST.matches(name)) {
+            byte[] transformedClass = transformParent(name, transformedName, basicClass);
+            if (forceDump && dumpFilter.matches(name, Collections.emptyList())) {
+                dump(name, basicClass);
             }
+            return bootstrap(name, cache(basicClass, () -> transformedClass));
         }
         return cache(basicClass, () -> {
             if (basicClass == null) {
-                return parent.transformClassBytes(name, transformedName, basicClass);
+                return transformParent(name, transformedName, basicClass);
             }
 
-            boolean shouldBootstrap = shouldBootstrap(basicClass);
-            AtomicBoolean modified = new AtomicBoolean(forceDump);
-
-            byte[] bytecode = basicClass;
-            if (!earlyTransformers.isEmpty()) {
-                bytecode = transform(name, transformedName, bytecode, earlyTransformers, modified);
+            long start = MetricsImpl.INSTANCE.start();
+            ClassWarmup warmup = this.warmup;
+            ClassWarmup.Result warm = warmup == null ? null : warmup.take(name, basicClass);
+            ClassState state;
+            boolean shouldBootstrap;
+            if (warm != null) {
+                warm.recordEarlyMetrics();
+                state = new ClassState(name, transformedName, warm.getEarlyBytes(), warm.getEarlyModifiers());
+                shouldBootstrap = warm.shouldBootstrap();
+            } else if (isTargeted(name, basicClass)) {
+                state = new ClassState(name, transformedName, basicClass);
+                transform(state, earlyTransformers);
+                shouldBootstrap = shouldBootstrap(state);
+            } else {
+                // Nothing is after this class, skip straight to Mixin
+                state = null;
+                shouldBootstrap = false;
             }
 
-            bytecode = parent.transformClassBytes(name, transformedName, bytecode);
-
-            //FIXME, this is stupid
-            List<Transformer> transformers = this.transformers;
-            if (shouldBootstrap) {
-                List<Transformer> newList = new ArrayList<>(this.transformers);
-                newList.add(BOOTSTRAP_TRANSFORMER);
-                transformers = newList;
-            }
-            if (!transformers.isEmpty()) {
-                bytecode = transform(name, transformedName, bytecode, transformers, modified);
+            // Mixin wants bytes, if it hands back the same ones the tree is still good
+            byte[] early = state == null ? basicClass : state.getBytes();
+            byte[] mixed = transformParent(name, transformedName, early);
+
+            byte[] bytecode;
+            List<Transformer> modifiers;
+            if (warm != null && mixed == early) {
+                // Mixin left it alone, the warmup already did the rest
+                warm.recordMetrics();
+                bytecode = warm.getBytes();
+                modifiers = warm.getModifiers();
+            } else if (state == null && (mixed == early || mixed == null || !ConstantPoolScanner.containsAny(mixed, targetedConstants))) {
+                // Still nothing after it, even if Mixin changed it
+                bytecode = mixed;
+                modifiers = Collections.emptyList();
+            } else if (state == null) {
+                // Mixin added an annotation somebody is after
+                state = new ClassState(name, transformedName, mixed);
+                shouldBootstrap = shouldBootstrap(state);
+                transformLate(state, shouldBootstrap);
+                bytecode = state.getBytes();
+                modifiers = state.getModifiers();
+            } else {
+                state.setBytes(mixed);
+                transformLate(state, shouldBootstrap);
+                bytecode = state.getBytes();
+                modifiers = state.getModifiers();
             }
 
-            if (dump && modified.get()) {
+            if (dump && (forceDump || !modifiers.isEmpty()) && dumpFilter.matches(name, modifiers)) {
                 dump(name, bytecode);
             }
 
-            return bootstrap(bytecode, shouldBootstrap);
+            MetricsImpl.INSTANCE.recordClass(name, start, bytecode, modifiers);
+
+            return bootstrap(name, bytecode, shouldBootstrap);
         });
     }
 
+    /**
+     * Runs a class through the transformers ahead of time, as if Mixin did not change it.
+     *
+     * @param name       The name of the class
+     * @param basicClass The original class
+     * @return The warmed up class
+     */
+    ClassWarmup.Result prepare(String name, byte[] basicClass) {
+        // The result might never be used, so its metrics only count once it is
+        MetricsImpl metrics = MetricsImpl.INSTANCE;
+        try {
+            MetricsImpl.Recording earlyMetrics = metrics.startRecording();
+            ClassState state = new ClassState(name, name, basicClass);
+            transform(state, earlyTransformers);
+            byte[] early = state.getBytes();
+            List<Transformer> earlyModifiers = new ArrayList<>(state.getModifiers());
+            boolean shouldBootstrap = shouldBootstrap(state);
+
+            MetricsImpl.Recording lateMetrics = metrics.startRecording();
+            transformLate(state, shouldBootstrap);
+            return new ClassWarmup.Result(
+                    ClassHash.of(basicClass),
+                    early,
+                    earlyModifiers,
+                    shouldBootstrap,
+                    state.getBytes(),
+                    state.getModifiers(),
+                    earlyMetrics,
+                    lateMetrics
+            );
+        } finally {
+            metrics.stopRecording();
+        }
+    }
+
+    /**
+     * Checks if a class might get transformed, without parsing it.
+     *
+     * @param name       The name of the class
+     * @param basicClass The class
+     * @return True if a transformer targets the class or it has an annotation that matters
+     */
+    private boolean isTargeted(String name, byte[] basicClass) {
+        return earlyTransformers.targets(name) ||
+                transformers.targets(name) ||
+                ConstantPoolScanner.containsAny(basicClass, targetedConstants);
+    }
+
+    void setWarmup(ClassWarmup warmup) {
+        this.warmup = warmup;
+    }
+
+    /**
+     * Checks if the class loader already asked for a class.
+     *
+     * @param name The name of the class
+     * @return True if the class was seen
+     */
+    boolean isLoaded(String name) {
+        return seenClasses.contains(name);
+    }
+
+    private void transformLate(ClassState state, boolean shouldBootstrap) {
+        transform(state, transformers);
+        if (shouldBootstrap) {
+            transform(state, BOOTSTRAP_TRANSFORMER);
+        }
+    }
+
+    private boolean shouldBootstrap(ClassState state) {
+        // Without the descriptor in the constant pool the annotation can't be there, no need to look at the tree
+        if (!state.hasNode() && !ConstantPoolScanner.contains(state.getBytes(), FORCE_BOOTLOADER_CONSTANT)) {
+            return false;
+        }
+        return state.getAnnotations().contains(ANNOTATION_FORCE_BOOTLOADER.getDescriptor());
+    }
+
     @Override
     public byte[] transformClass(MixinEnvironment environment, String name, byte[] classBytes) {
         return this.parent.transformClass(environment, name, classBytes);
@@ -191,68 +287,84 @@ public class ASMMixinTransformer implements IMixinTransformer {
     }
 
     private void dump(String name, byte[] bytecode) {
-        DUMP_SERVICE.submit(() -> {
-            Path path = FabricLoader.getInstance().getGameDir().resolve("gudASMDump");
-            String[] split = name.split("\\.");
-            for (int i = 0; i < split.length - 1; i++) {
-                String s = split[i];
-                path = path.resolve(s);
-            }
-            if (!Files.exists(path)) {
-                try {
-                    Files.createDirectories(path);
-                } catch (IOException ignored) {
-                }
-            }
-            path = path.resolve(split[split.length - 1] + ".class");
-            try (OutputStream stream = Files.newOutputStream(path, StandardOpenOption.CREATE)) {
-                stream.write(bytecode);
-            } catch (IOException ignored) {
-            }
-        });
+        ClassDumper.getInstance().dump(name, bytecode);
     }
 
-    private byte[] transform(String name, String transformedName, byte[] bytecode, List<Transformer> transformers, AtomicBoolean parentModifier) {
-        List<Transformer> validTransformers = new ArrayList<>();
-        for (Transformer transformer : transformers) {
-            if (transformer.handlesClass(name, transformedName)) {
-                validTransformers.add(transformer);
+    private void transform(ClassState state, TransformerIndex transformers) {
+        int[] found = transformers.find(state);
+        if (found.length == 0) {
+            return;
+        }
+
+        // Visitor transformers get a single pass without a tree, unless a tree transformer needs one anyway
+        List<Transformer> handling = new ArrayList<>(found.length);
+        boolean streaming = true;
+        for (int index : found) {
+            Transformer transformer = transformers.get(index);
+            if (transformer.handlesClass(state.getName(), state.getTransformedName())) {
+                handling.add(transformer);
+                streaming &= transformer instanceof ClassVisitorTransformer;
             }
         }
+        if (handling.isEmpty()) {
+            return;
+        }
 
-        if (validTransformers.isEmpty()) {
-            return bytecode;
+        if (streaming) {
+            List<ClassVisitorTransformer> visitors = new ArrayList<>(handling.size());
+            for (Transformer transformer : handling) {
+                visitors.add((ClassVisitorTransformer) transformer);
+            }
+            state.transformVisitors(visitors);
+        } else {
+            for (Transformer transformer : handling) {
+                transformHandled(state, transformer);
+            }
+        }
+    }
+
+    private void transform(ClassState state, Transformer transformer) {
+        if (transformer.handlesClass(state.getName(), state.getTransformedName())) {
+            transformHandled(state, transformer);
         }
+    }
 
-        ClassNode classNode = new ClassNode();
-        new ClassReader(bytecode).accept(classNode, 0);
-        boolean modified = false;
-        TransformerFlagsImpl flags = new TransformerFlagsImpl();
-        for (Transformer transformer : validTransformers) {
-            modified |= transformer.transform(classNode, flags);
+    private void transformHandled(ClassState state, Transformer transformer) {
+        ClassNode node = transformer.readsCodeLazily() ? state.getLazyNode() : state.getNode();
+        long start = MetricsImpl.INSTANCE.start();
+        boolean modified;
+        if (transformer instanceof ClassVisitorTransformer) {
+            modified = state.transformVisitor((ClassVisitorTransformer) transformer);
+        } else if (transformer instanceof MethodTransformer && ParallelMethodTransform.shouldRun(node)) {
+            modified = ParallelMethodTransform.run(state.getNode(), (MethodTransformer) transformer, state.getFlags());
+        } else {
+            modified = transformer.transform(node, state.getFlags());
         }
-        if (!modified) {
-            return bytecode;
+        MetricsImpl.INSTANCE.recordTransformer(transformer, start, modified);
+        if (modified) {
+            state.markDirty(transformer);
         }
+    }
 
-        ClassWriter writer = new ClassWriter(flags.getClassWriterFlags()) {
-            // Fixes an issue with stack calculations
-            @Override
-            protected ClassLoader getClassLoader() {
-                return classLoader;
-            }
-        };
-        classNode.accept(writer);
-        parentModifier.set(true);
-        return writer.toByteArray();
+    private byte[] transformParent(String name, String transformedName, byte[] basicClass) {
+        long start = MetricsImpl.INSTANCE.start();
+        byte[] transformed = parent.transformClassBytes(name, transformedName, basicClass);
+        MetricsImpl.INSTANCE.recordStage(AsmMetrics.Stage.MIXIN, start, transformed == null ? 0 : transformed.length);
+        return transformed;
     }
 
     byte[] cache(byte[] original, Supplier<byte[]> transformed) {
         return transformed.get();
     }
 
-    private boolean shouldBootstrap(byte[] bytecode) {
-        if (bytecode == null) {
+    /**
+     * Checks if a class has to go into the bootstrap class loader.
+     *
+     * @param bytecode The class
+     * @return True if the class has the ForceBootloader annotation
+     */
+    boolean shouldBootstrap(byte[] bytecode) {
+        if (bytecode == null || !ConstantPoolScanner.contains(bytecode, FORCE_BOOTLOADER_CONSTANT)) {
             return false;
         }
 
@@ -261,35 +373,24 @@ public class ASMMixinTransformer implements IMixinTransformer {
         return AsmUtils.hasAnnotation(classNode, ANNOTATION_FORCE_BOOTLOADER);
     }
 
-    private byte[] bootstrap(byte[] bytecode) {
-        return bootstrap(bytecode, shouldBootstrap(bytecode));
+    private byte[] bootstrap(String name, byte[] bytecode) {
+        return bootstrap(name, bytecode, shouldBootstrap(bytecode));
     }
 
-    private byte[] bootstrap(byte[] bytecode, boolean shouldBootstrap) {
-        if (bytecode == null) {
-            return null;
-        }
-
-        if (shouldBootstrap) {
-            try {
-                ClassLoader$defineClass.invoke(
-                        (ClassLoader) null, // AKA bootstrap ClassLoader
-                        (String) null, // Let the JVM figure it out
-                        bytecode,
-                        0,
-                        bytecode.length,
-                        (ProtectionDomain) null,
-                        (String) null
-                );
-            } catch (Throwable throwable) {
-                new RuntimeException("Failed to force a class into the bootstrap ClassLoader", throwable).printStackTrace();
-                System.exit(0);
-            }
-
-            return null;
-        } else {
+    private byte[] bootstrap(String name, byte[] bytecode, boolean shouldBootstrap) {
+        if (bytecode == null || !shouldBootstrap) {
             return bytecode;
         }
+        return injector.inject(name, bytecode);
+    }
+
+    /**
+     * Gets the ForceBootloader classes that Knot had to load instead.
+     *
+     * @return The failures, in the order they happened
+     */
+    List<BootloaderInjector.Failure> getBootloaderFailures() {
+        return injector.getFailures();
     }
 
     public void blacklistPackage(String name) {
@@ -304,6 +405,11 @@ public class ASMMixinTransformer implements IMixinTransformer {
             this.cache = cache;
         }
 
+        Cache(IMixinTransformer parent, TransformerIndex earlyTransformers, TransformerIndex transformers, ClassCache cache) {
+            super(parent, earlyTransformers, transformers);
+            this.cache = cache;
+        }
+
         @Override
         byte[] cache(byte[] original, Supplier<byte[]> transformer) {
             if (original == null) {
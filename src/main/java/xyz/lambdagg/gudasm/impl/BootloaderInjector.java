@@ -0,0 +1,291 @@
+package xyz.lambdagg.gudasm.impl;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.objectweb.asm.ClassReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.security.ProtectionDomain;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Defines ForceBootloader classes in the bootstrap class loader.
+ * <p>
+ * The bootstrap class loader can only see its own classes, so every supertype of a class has to be in there before
+ * the class itself. When a class gets injected its supertypes that are ForceBootloader classes as well are run
+ * through the transformer first and everything is defined as one batch, supertypes first.
+ * <p>
+ * A class that can't be injected is handed back to Knot and loaded like any other class, the failure is logged and
+ * recorded instead of taking the game down with it.
+ */
+final class BootloaderInjector {
+    private static final Logger LOGGER = LogManager.getLogger("gud_asm");
+    private static final MethodHandle ClassLoader$defineClass;
+    private static final Throwable DEFINE_CLASS_ERROR;
+
+    static {
+        MethodHandle defineClass = null;
+        Throwable error = null;
+        try {
+            defineClass = ReflectionHelper.findStatic(
+                    ClassLoader.class,
+                    "defineClass1",
+                    Class.class,
+                    ClassLoader.class, String.class, byte[].class, int.class, int.class, ProtectionDomain.class, String.class
+            );
+        } catch (ReflectiveOperationException e) {
+            error = e;
+        }
+        ClassLoader$defineClass = defineClass;
+        DEFINE_CLASS_ERROR = error;
+    }
+
+    private final ASMMixinTransformer transformer;
+    private final Set<String> injected = ConcurrentHashMap.newKeySet();
+    // Transformed classes that ended up not being injected, Knot gets these when it asks for them
+    private final Map<String, byte[]> pending = new ConcurrentHashMap<>();
+    private final List<Failure> failures = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Batch> batch = new ThreadLocal<>();
+
+    BootloaderInjector(ASMMixinTransformer transformer) {
+        this.transformer = transformer;
+    }
+
+    /**
+     * Injects a class, along with any of its supertypes that have to go first.
+     *
+     * @param name     The name of the class
+     * @param bytecode The transformed class
+     * @return Null if the class is in the bootstrap class loader, otherwise the bytes Knot should define
+     */
+    byte[] inject(String name, byte[] bytecode) {
+        Batch current = batch.get();
+        if (current != null) {
+            // A supertype of a class that is being injected, it goes in with that one
+            current.add(name, bytecode, collectSupertypes(bytecode, current));
+            return null;
+        }
+
+        current = new Batch();
+        batch.set(current);
+        try {
+            current.add(name, bytecode, collectSupertypes(bytecode, current));
+        } finally {
+            batch.remove();
+        }
+        define(current);
+        return injected.contains(name) ? null : pending.remove(name);
+    }
+
+    /**
+     * Gets what Knot should get for a class it asks for again, supertypes of injected classes are transformed before
+     * Knot gets to them.
+     *
+     * @param name       The name of the class
+     * @param basicClass The bytes Knot has
+     * @return Null if the class is in the bootstrap class loader, otherwise the bytes Knot should define
+     */
+    byte[] getResult(String name, byte[] basicClass) {
+        if (injected.contains(name)) {
+            return null;
+        }
+        byte[] bytecode = pending.remove(name);
+        return bytecode == null ? basicClass : bytecode;
+    }
+
+    /**
+     * Gets the classes that could not be injected so far, in the order they failed.
+     *
+     * @return The failures
+     */
+    List<Failure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    // Transforms the supertypes that need to be injected, they add themselves to the batch before this class
+    private List<String> collectSupertypes(byte[] bytecode, Batch batch) {
+        ClassReader reader = new ClassReader(bytecode);
+        List<String> supertypes = new ArrayList<>();
+        if (reader.getSuperName() != null) {
+            supertypes.add(reader.getSuperName().replace('/', '.'));
+        }
+        for (String anInterface : reader.getInterfaces()) {
+            supertypes.add(anInterface.replace('/', '.'));
+        }
+
+        for (String supertype : supertypes) {
+            if (injected.contains(supertype) || batch.contains(supertype) || transformer.isLoaded(supertype)) {
+                continue;
+            }
+            byte[] original = readClass(supertype);
+            if (original != null && transformer.shouldBootstrap(original)) {
+                // The supertype is seen now, if it doesn't get injected after all its bytes must not get lost
+                byte[] transformed = transformer.transformClassBytes(supertype, supertype, original);
+                if (transformed != null) {
+                    pending.put(supertype, transformed);
+                }
+            }
+        }
+        return supertypes;
+    }
+
+    private static byte[] readClass(String name) {
+        ClassLoader classLoader = ASMMixinTransformer.getClassLoader();
+        if (classLoader == null) {
+            return null;
+        }
+        try (InputStream stream = classLoader.getResourceAsStream(name.replace('.', '/') + ".class")) {
+            return stream == null ? null : stream.readAllBytes();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private synchronized void define(Batch batch) {
+        Set<String> failed = new HashSet<>();
+        for (Entry entry : batch.entries) {
+            if (injected.contains(entry.name)) {
+                continue;
+            }
+
+            String dependency = null;
+            for (String supertype : entry.supertypes) {
+                if (failed.contains(supertype)) {
+                    dependency = supertype;
+                    break;
+                }
+            }
+            if (dependency != null) {
+                fail(new Failure(entry.name, Failure.Reason.SUPERTYPE_FAILED, dependency, null), entry, failed);
+                continue;
+            }
+            if (ClassLoader$defineClass == null) {
+                fail(new Failure(entry.name, Failure.Reason.UNSUPPORTED, null, DEFINE_CLASS_ERROR), entry, failed);
+                continue;
+            }
+
+            try {
+                ClassLoader$defineClass.invoke(
+                        (ClassLoader) null, // AKA bootstrap ClassLoader
+                        (String) null, // Let the JVM figure it out
+                        entry.bytecode,
+                        0,
+                        entry.bytecode.length,
+                        (ProtectionDomain) null,
+                        (String) null
+                );
+                injected.add(entry.name);
+            } catch (Throwable throwable) {
+                fail(new Failure(entry.name, Failure.Reason.DEFINE_FAILED, null, throwable), entry, failed);
+            }
+        }
+    }
+
+    private void fail(Failure failure, Entry entry, Set<String> failed) {
+        failures.add(failure);
+        failed.add(entry.name);
+        pending.put(entry.name, entry.bytecode);
+        if (failure.getCause() == null) {
+            LOGGER.error(failure.toString());
+        } else {
+            LOGGER.error(failure.toString(), failure.getCause());
+        }
+    }
+
+    /**
+     * A class that could not be injected, it gets loaded by Knot instead.
+     */
+    static final class Failure {
+        private final String name;
+        private final Reason reason;
+        private final String supertype;
+        private final Throwable cause;
+
+        Failure(String name, Reason reason, String supertype, Throwable cause) {
+            this.name = name;
+            this.reason = reason;
+            this.supertype = supertype;
+            this.cause = cause;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Reason getReason() {
+            return reason;
+        }
+
+        /**
+         * Gets the supertype that failed first, only set for {@link Reason#SUPERTYPE_FAILED}.
+         *
+         * @return The supertype
+         */
+        String getSupertype() {
+            return supertype;
+        }
+
+        Throwable getCause() {
+            return cause;
+        }
+
+        @Override
+        public String toString() {
+            switch (reason) {
+                case SUPERTYPE_FAILED:
+                    return "Could not force " + name + " into the bootstrap ClassLoader, its supertype " + supertype + " failed first";
+                case UNSUPPORTED:
+                    return "Could not force " + name + " into the bootstrap ClassLoader, ClassLoader.defineClass1 is not available";
+                default:
+                    return "Failed to force " + name + " into the bootstrap ClassLoader";
+            }
+        }
+
+        enum Reason {
+            /**
+             * The JVM refused the class.
+             */
+            DEFINE_FAILED,
+            /**
+             * A supertype in the same batch could not be injected.
+             */
+            SUPERTYPE_FAILED,
+            /**
+             * The JVM has no way for us to inject classes.
+             */
+            UNSUPPORTED
+        }
+    }
+
+    // The classes one injection needs, in the order they have to be defined
+    private static final class Batch {
+        private final List<Entry> entries = new ArrayList<>();
+        private final Set<String> names = new HashSet<>();
+
+        void add(String name, byte[] bytecode, List<String> supertypes) {
+            if (names.add(name)) {
+                entries.add(new Entry(name, bytecode, supertypes));
+            }
+        }
+
+        boolean contains(String name) {
+            return names.contains(name);
+        }
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final byte[] bytecode;
+        private final List<String> supertypes;
+
+        private Entry(String name, byte[] bytecode, List<String> supertypes) {
+            this.name = name;
+            this.bytecode = bytecode;
+            this.supertypes = supertypes;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import xyz.lambdagg.gudasm.util.FileUtils;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
 
 // Bootstraps all the mess we make.
 public class Bootstrap {
@@ -39,17 +40,38 @@ public class Bootstrap {
         ClassCache cache = registry.getCache().orElse(null);
         if (cache != null) {
             try {
-                cache.load();
+                cache.load(registry.getFingerprint());
                 enableCache = true;
+
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        cache.save();
+                    } catch (IOException e) {
+                        new RuntimeException("Failed to save class cache " + cache.getName(), e).printStackTrace();
+                    }
+                }, "gudASM Cache Saver"));
             } catch (IOException e) {
                 new RuntimeException("Failed to load class cache " + cache.getName(), e).printStackTrace();
             }
         }
 
+        // Start timing things before anything gets transformed
+        if (Configuration.METRICS.get()) {
+            MetricsImpl.INSTANCE.setEnabled(true);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    MetricsImpl.INSTANCE.writeReport(loader.getGameDir().resolve("gudASMMetrics.txt"));
+                } catch (IOException e) {
+                    new RuntimeException("Failed to write the metrics report", e).printStackTrace();
+                }
+            }, "gudASM Metrics Report"));
+        }
+
         // Clean out the class dump if dumping is enabled
         if (Configuration.DUMP.get() != Configuration.DumpMode.OFF) {
             try {
                 FileUtils.delete(loader.getGameDir().resolve("gudASMDump"));
+                Files.deleteIfExists(loader.getGameDir().resolve("gudASMDump.jar"));
             } catch (IOException ignored) {
             }
         }
@@ -89,6 +111,11 @@ public class Bootstrap {
             // Set our custom transformer so it will be used in future class loads
             MethodHandle KnotClassDelegate$mixinTransformer$setter = ReflectionHelper.findSetter(KnotClassDelegate, KnotClassLoader$delegate, "mixinTransformer", IMixinTransformer.class);
             KnotClassDelegate$mixinTransformer$setter.invokeExact((IMixinTransformer) customTransformer);
+
+            // Get a head start on the classes that will be transformed
+            if (Configuration.WARMUP.get()) {
+                ClassWarmup.start(customTransformer);
+            }
         } catch (Throwable t) {
             new RuntimeException("Failed to hook into Knot", t).printStackTrace();
             System.exit(0);
@@ -42,6 +42,16 @@ public class BootstrapTransformer implements Transformer {
         return ENABLED;
     }
 
+    @Override
+    public boolean reportsChangedMethods() {
+        return true;
+    }
+
+    @Override
+    public boolean readsCodeLazily() {
+        return true;
+    }
+
     @Override
     public boolean transform(ClassNode classNode, Flags flags) {
         boolean changed = AsmUtils.removeAnnotations(classNode, FORCEBOOTLOADER);
@@ -53,6 +63,7 @@ public class BootstrapTransformer implements Transformer {
                     annotation.desc = JVM_FORCEINLINE.getDescriptor();
                     changed = true;
                 }
+                flags.markChanged(method);
             }
         }
 
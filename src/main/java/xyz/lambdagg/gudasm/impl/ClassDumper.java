@@ -0,0 +1,178 @@
+package xyz.lambdagg.gudasm.impl;
+
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes dumped classes into a single jar from a background thread.
+ * <p>
+ * The writer takes everything that is queued at once and writes it as a batch. The queue is capped by the size of the
+ * classes in it, when it is full the class loading threads wait for the writer to catch up instead of piling up
+ * classes in memory.
+ */
+final class ClassDumper {
+    private static ClassDumper instance;
+
+    private final Path path;
+    private final long capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private final Thread thread;
+    private long queuedBytes = 0;
+    private boolean closed = false;
+    private volatile boolean failed = false;
+
+    private ClassDumper(Path path, long capacity) {
+        this.path = path;
+        this.capacity = capacity;
+        thread = new Thread(this::run, "gudASM Dumper");
+        thread.setDaemon(true);
+        thread.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "gudASM Dumper Cleanup"));
+    }
+
+    /**
+     * Gets the dumper, starting it if needed.
+     *
+     * @return The dumper
+     */
+    static synchronized ClassDumper getInstance() {
+        if (instance == null) {
+            instance = new ClassDumper(
+                    FabricLoader.getInstance().getGameDir().resolve("gudASMDump.jar"),
+                    Math.max(1, Configuration.DUMP_MEMORY.get()) * 1024L * 1024L
+            );
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a class to be dumped, waits if the queue is full.
+     *
+     * @param name     The name of the class
+     * @param bytecode The class
+     */
+    void dump(String name, byte[] bytecode) {
+        if (failed || bytecode == null) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            // A class bigger than the whole queue still gets in once the queue is empty
+            while (!closed && queuedBytes > 0 && queuedBytes + bytecode.length > capacity) {
+                notFull.awaitUninterruptibly();
+            }
+            if (closed) {
+                return;
+            }
+            queue.add(new Entry(name, bytecode));
+            queuedBytes += bytecode.length;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        Set<String> written = new HashSet<>();
+        List<Entry> batch = new ArrayList<>();
+        try (ZipOutputStream stream = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            stream.setLevel(Deflater.BEST_SPEED);
+            while (true) {
+                lock.lock();
+                try {
+                    while (queue.isEmpty() && !closed) {
+                        notEmpty.awaitUninterruptibly();
+                    }
+                    if (queue.isEmpty()) {
+                        break;
+                    }
+                    batch.addAll(queue);
+                    queue.clear();
+                } finally {
+                    lock.unlock();
+                }
+
+                long batchBytes = 0;
+                for (Entry entry : batch) {
+                    batchBytes += entry.bytecode.length;
+                    String file = entry.name.replace('.', '/') + ".class";
+                    if (written.add(file)) {
+                        stream.putNextEntry(new ZipEntry(file));
+                        stream.write(entry.bytecode);
+                        stream.closeEntry();
+                    }
+                }
+                batch.clear();
+                release(batchBytes);
+            }
+        } catch (IOException e) {
+            new RuntimeException("Failed to write class dump " + path, e).printStackTrace();
+        } finally {
+            failed = true;
+            // Nobody is going to empty the queue anymore, don't leave anyone waiting on it
+            lock.lock();
+            try {
+                queue.clear();
+                queuedBytes = 0;
+                closed = true;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+        try {
+            queuedBytes -= bytes;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Writes out what is left and finishes the jar
+    private void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final byte[] bytecode;
+
+        private Entry(String name, byte[] bytecode) {
+            this.name = name;
+            this.bytecode = bytecode;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package xyz.lambdagg.gudasm.impl;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers class hierarchy questions from raw class files, nothing gets loaded to do it.
+ * <p>
+ * The supertypes of a class are read from its class file the first time they are needed and kept around. The class
+ * files are the ones on disk, changes other transformers make to the hierarchy of a class are not seen unless that
+ * class is the one being written.
+ * <p>
+ * A class that can't be found is not guessed at, that would give frames the verifier rejects. Like ASM this throws
+ * a {@link TypeNotPresentException} instead, misses are not cached so a class that shows up later still works.
+ */
+final class ClassHierarchy {
+    static final ClassHierarchy INSTANCE = new ClassHierarchy();
+
+    private static final String OBJECT = "java/lang/Object";
+
+    private final Map<String, Info> infos = new ConcurrentHashMap<>();
+
+    private ClassHierarchy() {
+    }
+
+    /**
+     * Finds the closest common super class of two classes, like {@link org.objectweb.asm.ClassWriter} does.
+     *
+     * @param type1 The internal name of the first class
+     * @param type2 The internal name of the second class
+     * @param self  The class that is being written, it might not match its class file anymore
+     * @return The internal name of the common super class
+     * @throws TypeNotPresentException If a class in the hierarchy can't be read
+     */
+    String getCommonSuperClass(String type1, String type2, @Nullable Info self) {
+        if (type1.equals(type2)) {
+            return type1;
+        }
+        Info info1 = get(type1, self);
+        Info info2 = get(type2, self);
+        if (isAssignableFrom(type1, type2, self)) {
+            return type1;
+        }
+        if (isAssignableFrom(type2, type1, self)) {
+            return type2;
+        }
+        if (info1.isInterface() || info2.isInterface()) {
+            return OBJECT;
+        }
+
+        String current = info1.superName;
+        while (current != null) {
+            if (isAssignableFrom(current, type2, self)) {
+                return current;
+            }
+            current = get(current, self).superName;
+        }
+        return OBJECT;
+    }
+
+    /**
+     * Checks if a class is the same as or a supertype of another.
+     *
+     * @param type  The possible supertype
+     * @param other The class to check
+     * @param self  The class that is being written
+     * @return True if other can be assigned to type
+     */
+    boolean isAssignableFrom(String type, String other, @Nullable Info self) {
+        if (type.equals(OBJECT)) {
+            return true;
+        }
+        Set<String> seen = new HashSet<>();
+        return isAssignableFrom(type, other, self, seen);
+    }
+
+    private boolean isAssignableFrom(String type, String other, @Nullable Info self, Set<String> seen) {
+        while (other != null && seen.add(other)) {
+            if (type.equals(other)) {
+                return true;
+            }
+            Info info = get(other, self);
+            for (String anInterface : info.interfaces) {
+                if (isAssignableFrom(type, anInterface, self, seen)) {
+                    return true;
+                }
+            }
+            other = info.superName;
+        }
+        return false;
+    }
+
+    private Info get(String name, @Nullable Info self) {
+        if (self != null && self.name.equals(name)) {
+            return self;
+        }
+        Info info = infos.get(name);
+        if (info == null) {
+            info = read(name);
+            Info existing = infos.putIfAbsent(name, info);
+            if (existing != null) {
+                info = existing;
+            }
+        }
+        return info;
+    }
+
+    private static Info read(String name) {
+        ClassLoader classLoader = ASMMixinTransformer.getClassLoader();
+        if (classLoader == null) {
+            classLoader = ClassLoader.getSystemClassLoader();
+        }
+        try (InputStream stream = classLoader.getResourceAsStream(name + ".class")) {
+            if (stream == null) {
+                throw new TypeNotPresentException(name.replace('/', '.'), null);
+            }
+            ClassReader reader = new ClassReader(stream);
+            return new Info(reader.getClassName(), reader.getSuperName(), reader.getInterfaces(), reader.getAccess());
+        } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new TypeNotPresentException(name.replace('/', '.'), e);
+        }
+    }
+
+    /**
+     * The supertypes of a class.
+     */
+    static final class Info {
+        private final String name;
+        private final String superName;
+        private final String[] interfaces;
+        private final int access;
+
+        Info(String name, @Nullable String superName, String[] interfaces, int access) {
+            this.name = name;
+            this.superName = superName;
+            this.interfaces = interfaces;
+            this.access = access;
+        }
+
+        boolean isInterface() {
+            return (access & Opcodes.ACC_INTERFACE) != 0;
+        }
+    }
+}
@@ -0,0 +1,567 @@
+package xyz.lambdagg.gudasm.impl;
+
+import org.objectweb.asm.*;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import xyz.lambdagg.gudasm.api.v1.AsmMetrics;
+import xyz.lambdagg.gudasm.api.v1.ClassVisitorTransformer;
+import xyz.lambdagg.gudasm.api.v1.Transformer;
+import xyz.lambdagg.gudasm.util.InterningClassReader;
+
+import java.util.*;
+
+/**
+ * A class on its way through the transformers.
+ * <p>
+ * The class is only parsed once a transformer needs the tree and only written once something needs the bytes again,
+ * so stages that don't need bytes in between share a single tree.
+ */
+final class ClassState {
+    private final String name;
+    private final String transformedName;
+    private byte[] bytes;
+    private ClassNode node;
+    private ClassReader reader;
+    private Map<MethodNode, String> originalMethods;
+    private Set<MethodNode> lazyMethods = Collections.emptySet();
+    private TransformerFlagsImpl flags;
+    private Set<String> annotations;
+    private List<Transformer> modifiers = Collections.emptyList();
+    private boolean dirty = false;
+
+    ClassState(String name, String transformedName, byte[] bytes) {
+        this(name, transformedName, bytes, Collections.emptyList());
+    }
+
+    /**
+     * Creates the state of a class that might already have been transformed.
+     *
+     * @param name            The name of the class
+     * @param transformedName The transformed name of the class
+     * @param bytes           The bytes of the class
+     * @param modifiers       The transformers that already changed these bytes
+     */
+    ClassState(String name, String transformedName, byte[] bytes, List<Transformer> modifiers) {
+        this.name = name;
+        this.transformedName = transformedName;
+        this.bytes = bytes;
+        if (!modifiers.isEmpty()) {
+            this.modifiers = new ArrayList<>(modifiers);
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getTransformedName() {
+        return transformedName;
+    }
+
+    /**
+     * Checks if the tree of this class has already been parsed.
+     *
+     * @return True if the tree is around
+     */
+    boolean hasNode() {
+        return node != null;
+    }
+
+    /**
+     * Gets the tree of this class, parsing it if needed.
+     *
+     * @return The tree
+     */
+    ClassNode getNode() {
+        if (node == null) {
+            parse(false);
+        } else if (!lazyMethods.isEmpty()) {
+            loadCode(new ArrayList<>(lazyMethods));
+        }
+        return node;
+    }
+
+    /**
+     * Gets the tree of this class, parsing it without method code if needed.
+     * <p>
+     * The code of a method is only read once {@link #loadCode(MethodNode)} asks for it, methods that never get their
+     * code read are copied from the original class when the tree is written.
+     *
+     * @return The tree
+     */
+    ClassNode getLazyNode() {
+        if (node == null) {
+            parse(true);
+        }
+        return node;
+    }
+
+    private void parse(boolean lazy) {
+        long start = MetricsImpl.INSTANCE.start();
+        node = new ClassNode();
+        ClassReader reader = Configuration.INTERN_SYMBOLS.get() ? new InterningClassReader(bytes) : new ClassReader(bytes);
+        reader.accept(node, lazy ? ClassReader.SKIP_CODE : 0);
+        this.reader = reader;
+        originalMethods = new IdentityHashMap<>();
+        lazyMethods = lazy ? Collections.newSetFromMap(new IdentityHashMap<>()) : Collections.emptySet();
+        for (MethodNode method : node.methods) {
+            originalMethods.put(method, method.name + method.desc);
+            if (lazy && (method.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0) {
+                lazyMethods.add(method);
+            }
+        }
+        flags = new TransformerFlagsImpl(this);
+        MetricsImpl.INSTANCE.recordStage(AsmMetrics.Stage.READ, start, 0);
+    }
+
+    /**
+     * Reads the code of a method if the tree was parsed without it.
+     *
+     * @param method The method
+     */
+    void loadCode(MethodNode method) {
+        if (lazyMethods.contains(method)) {
+            loadCode(Collections.singletonList(method));
+        }
+    }
+
+    private void loadCode(Collection<MethodNode> methods) {
+        long start = MetricsImpl.INSTANCE.start();
+        Map<String, MethodNode> targets = new HashMap<>();
+        for (MethodNode method : methods) {
+            if (lazyMethods.remove(method)) {
+                targets.put(originalMethods.get(method), method);
+            }
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        // Only the code gets read again, everything else is already in the tree
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                MethodNode method = targets.get(name + descriptor);
+                return method == null ? null : new CodeVisitor(method);
+            }
+        }, 0);
+        MetricsImpl.INSTANCE.recordStage(AsmMetrics.Stage.READ, start, 0);
+    }
+
+    /**
+     * Gets the flags that will be used when writing the tree.
+     *
+     * @return The flags
+     */
+    TransformerFlagsImpl getFlags() {
+        if (node == null) {
+            getNode();
+        }
+        return flags;
+    }
+
+    /**
+     * Marks the tree as changed by a transformer.
+     *
+     * @param transformer The transformer that changed it
+     */
+    void markDirty(Transformer transformer) {
+        dirty = true;
+        if (!transformer.reportsChangedMethods()) {
+            flags.markUnreported();
+        }
+        addModifier(transformer);
+    }
+
+    private void addModifier(Transformer transformer) {
+        if (modifiers.isEmpty()) {
+            modifiers = new ArrayList<>(2);
+        }
+        modifiers.add(transformer);
+    }
+
+    /**
+     * Runs a visitor transformer over the tree of this class.
+     * <p>
+     * The visitor writes into a new tree, which replaces the current one if the transformer changed anything. The
+     * methods of the new tree are new objects, so whatever earlier transformers requested for single methods applies
+     * to the whole class from then on and no methods get copied. The caller still has to
+     * {@link #markDirty(Transformer) mark} the class.
+     *
+     * @param transformer The transformer
+     * @return True if the class was changed
+     */
+    boolean transformVisitor(ClassVisitorTransformer transformer) {
+        ClassNode node = getNode();
+        VisitorContext context = new VisitorContext(this, flags);
+        ClassNode result = new ClassNode();
+        node.accept(transformer.createVisitor(result, context));
+        if (context.changed) {
+            this.node = result;
+            flags.forgetMethods();
+        }
+        return context.changed;
+    }
+
+    /**
+     * Runs visitor transformers over this class in a single pass, without a tree.
+     * <p>
+     * The visitors are chained in order in front of a writer that is linked to the reader, so methods none of them
+     * touch are copied as they are. The pass can't be split between the transformers, their metrics only cover
+     * creating the visitors and the pass shows up as a write.
+     *
+     * @param transformers The transformers, in the order they should see the class
+     */
+    void transformVisitors(List<ClassVisitorTransformer> transformers) {
+        ClassReader reader = new ClassReader(getBytes());
+        Tail tail = new Tail();
+        ClassVisitor chain = tail;
+        VisitorContext[] contexts = new VisitorContext[transformers.size()];
+        long[] times = new long[contexts.length];
+        int writerFlags = 0;
+        for (int i = contexts.length - 1; i >= 0; i--) {
+            contexts[i] = new VisitorContext(this, null);
+            long start = MetricsImpl.INSTANCE.start();
+            chain = transformers.get(i).createVisitor(chain, contexts[i]);
+            times[i] = start == 0 ? 0 : System.nanoTime() - start;
+            contexts[i].creating = false;
+            writerFlags |= contexts[i].writerFlags;
+        }
+
+        long start = MetricsImpl.INSTANCE.start();
+        HierarchyClassWriter writer = new HierarchyClassWriter(reader, writerFlags, null);
+        tail.setNext(writer);
+        reader.accept(chain, 0);
+
+        boolean changed = false;
+        for (int i = 0; i < contexts.length; i++) {
+            ClassVisitorTransformer transformer = transformers.get(i);
+            if (start != 0) {
+                MetricsImpl.INSTANCE.recordTransformer(transformer, start, start + times[i], contexts[i].changed);
+            }
+            if (contexts[i].changed) {
+                addModifier(transformer);
+                changed = true;
+            }
+        }
+        if (changed) {
+            setBytes(writer.toByteArray());
+        }
+        MetricsImpl.INSTANCE.recordStage(AsmMetrics.Stage.WRITE, start, changed ? bytes.length : 0);
+    }
+
+    /**
+     * Checks if any transformer changed this class.
+     *
+     * @return True if the class was changed
+     */
+    boolean isModified() {
+        return !modifiers.isEmpty();
+    }
+
+    /**
+     * Gets the transformers that changed this class, in the order they did.
+     *
+     * @return The transformers
+     */
+    List<Transformer> getModifiers() {
+        return modifiers;
+    }
+
+    /**
+     * Gets the bytes of this class, writing the tree if it was changed.
+     *
+     * @return The bytes
+     */
+    byte[] getBytes() {
+        if (dirty) {
+            long start = MetricsImpl.INSTANCE.start();
+            loadChangedCode();
+            computeMethods();
+            int writerFlags = flags.getClassWriterFlags();
+            ClassWriter writer;
+            if (flags.canCopyMethods()) {
+                writer = new HierarchyClassWriter(reader, writerFlags, node);
+                writeCopyingMethods(writer);
+            } else {
+                writer = new HierarchyClassWriter(writerFlags, node);
+                node.accept(writer);
+            }
+            bytes = writer.toByteArray();
+            annotations = null;
+            dirty = false;
+            MetricsImpl.INSTANCE.recordStage(AsmMetrics.Stage.WRITE, start, bytes.length);
+
+            // Computed frames and maxes only end up in the bytes, the tree is out of date now
+            if (writerFlags != 0) {
+                node = null;
+                reader = null;
+                originalMethods = null;
+                lazyMethods = Collections.emptySet();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads the code of every method that can't be copied from the original class.
+     */
+    private void loadChangedCode() {
+        if (lazyMethods.isEmpty()) {
+            return;
+        }
+        if (!flags.canCopyMethods()) {
+            loadCode(new ArrayList<>(lazyMethods));
+            return;
+        }
+        List<MethodNode> changed = new ArrayList<>();
+        for (MethodNode method : lazyMethods) {
+            if (flags.isChanged(method) || !originalMethods.get(method).equals(method.name + method.desc)) {
+                changed.add(method);
+            }
+        }
+        loadCode(changed);
+    }
+
+    /**
+     * Writes the tree, but copies the methods nobody changed straight from the original class.
+     * <p>
+     * The writer has to be linked to the original reader, ASM then copies the bytes of a method when the reader
+     * visits it with the method writer itself.
+     *
+     * @param writer The writer
+     */
+    private void writeCopyingMethods(ClassWriter writer) {
+        Set<String> copied = new HashSet<>();
+        for (MethodNode method : node.methods) {
+            String original = originalMethods.get(method);
+            if (original != null && !flags.isChanged(method) && original.equals(method.name + method.desc)) {
+                copied.add(original);
+            }
+        }
+
+        node.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                if (copied.contains(name + descriptor)) {
+                    return null;
+                }
+                return super.visitMethod(access, name, descriptor, signature, exceptions);
+            }
+
+            @Override
+            public void visitEnd() {
+                if (!copied.isEmpty()) {
+                    reader.accept(new ClassVisitor(Opcodes.ASM9) {
+                        @Override
+                        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                            if (copied.contains(name + descriptor)) {
+                                return writer.visitMethod(access, name, descriptor, signature, exceptions);
+                            }
+                            return null;
+                        }
+                    }, 0);
+                }
+                super.visitEnd();
+            }
+        });
+    }
+
+    /**
+     * Computes frames and maxes of the methods that asked for it on their own.
+     * <p>
+     * ASM can only compute them for a whole class, so each method gets written on its own into an otherwise empty
+     * copy of the class and is read back. The other methods keep what they have.
+     */
+    private void computeMethods() {
+        Map<MethodNode, Integer> methods = flags.getMethodFlags();
+        if (methods.isEmpty()) {
+            return;
+        }
+
+        String[] interfaces = node.interfaces == null ? null : node.interfaces.toArray(new String[0]);
+        ListIterator<MethodNode> iterator = node.methods.listIterator();
+        while (iterator.hasNext()) {
+            MethodNode method = iterator.next();
+            Integer methodFlags = methods.get(method);
+            if (methodFlags == null) {
+                continue;
+            }
+
+            ClassWriter writer = new HierarchyClassWriter(methodFlags, node);
+            writer.visit(node.version, node.access, node.name, node.signature, node.superName, interfaces);
+            method.accept(writer);
+            writer.visitEnd();
+            ClassNode computed = new ClassNode();
+            new ClassReader(writer.toByteArray()).accept(computed, 0);
+            iterator.set(computed.methods.get(0));
+        }
+        flags.clearMethods();
+    }
+
+    /**
+     * Replaces the bytes of this class, the tree is kept if they are the same bytes.
+     *
+     * @param bytes The new bytes
+     */
+    void setBytes(byte[] bytes) {
+        if (bytes != getBytes()) {
+            this.bytes = bytes;
+            annotations = null;
+            node = null;
+            reader = null;
+            originalMethods = null;
+            lazyMethods = Collections.emptySet();
+        }
+    }
+
+    /**
+     * Gets the descriptors of the annotations on this class, the class is not parsed for this.
+     *
+     * @return The annotation descriptors
+     */
+    Set<String> getAnnotations() {
+        if (node != null) {
+            // Transformers might have changed them
+            Set<String> annotations = new HashSet<>();
+            addAnnotations(annotations, node.visibleAnnotations);
+            addAnnotations(annotations, node.invisibleAnnotations);
+            return annotations;
+        }
+
+        if (annotations == null) {
+            long start = MetricsImpl.INSTANCE.start();
+            Set<String> annotations = new HashSet<>();
+            new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                    annotations.add(descriptor);
+                    return null;
+                }
+            }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            this.annotations = annotations.isEmpty() ? Collections.emptySet() : annotations;
+            MetricsImpl.INSTANCE.recordStage(AsmMetrics.Stage.READ, start, 0);
+        }
+        return annotations;
+    }
+
+    private static void addAnnotations(Set<String> annotations, List<AnnotationNode> nodes) {
+        if (nodes != null) {
+            for (AnnotationNode annotation : nodes) {
+                annotations.add(annotation.desc);
+            }
+        }
+    }
+
+    // Passes only the code of a method on, the rest was read with the tree already
+    private static final class CodeVisitor extends MethodVisitor {
+        private CodeVisitor(MethodNode method) {
+            super(Opcodes.ASM9, method);
+        }
+
+        @Override
+        public void visitParameter(String name, int access) {
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotationDefault() {
+            return null;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            return null;
+        }
+
+        @Override
+        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+            return null;
+        }
+
+        @Override
+        public void visitAnnotableParameterCount(int parameterCount, boolean visible) {
+        }
+
+        @Override
+        public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+            return null;
+        }
+
+        @Override
+        public void visitAttribute(Attribute attribute) {
+        }
+    }
+
+    // The end of a visitor chain, the writer can only be created once the chain asked for its flags
+    private static final class Tail extends ClassVisitor {
+        private Tail() {
+            super(Opcodes.ASM9);
+        }
+
+        private void setNext(HierarchyClassWriter next) {
+            cv = next;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            // The header after every visitor is what gets written, the writer needs it for frames
+            ((HierarchyClassWriter) cv).describe(access, name, superName, interfaces);
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+    }
+
+    private static final class VisitorContext implements ClassVisitorTransformer.Context {
+        private final ClassState state;
+        private final TransformerFlagsImpl flags;
+        private boolean creating = true;
+        private boolean changed = false;
+        private int writerFlags = 0;
+
+        private VisitorContext(ClassState state, TransformerFlagsImpl flags) {
+            this.state = state;
+            this.flags = flags;
+        }
+
+        @Override
+        public String getName() {
+            return state.name;
+        }
+
+        @Override
+        public String getTransformedName() {
+            return state.transformedName;
+        }
+
+        @Override
+        public void markChanged() {
+            changed = true;
+        }
+
+        @Override
+        public void requestMaxes() {
+            if (flags != null) {
+                flags.requestMaxes();
+            } else {
+                checkCreating();
+                writerFlags |= ClassWriter.COMPUTE_MAXS;
+            }
+        }
+
+        @Override
+        public void requestFrames() {
+            if (flags != null) {
+                flags.requestFrames();
+            } else {
+                checkCreating();
+                writerFlags |= ClassWriter.COMPUTE_FRAMES;
+            }
+        }
+
+        private void checkCreating() {
+            if (!creating) {
+                throw new IllegalStateException("Frames and maxes can only be requested while creating the visitor");
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package xyz.lambdagg.gudasm.impl;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+import xyz.lambdagg.gudasm.api.v1.Transformer;
+import xyz.lambdagg.gudasm.util.ClassHash;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Transforms targeted classes on a background pool before anything asks for them.
+ * <p>
+ * Mixin can't be run off the loading thread, so the warmup runs the early transformers and then the late ones as if
+ * Mixin left the class alone. When the class loads the early result goes to Mixin, if Mixin hands the same bytes back
+ * the late result is used as is, otherwise the late transformers run like they normally would.
+ * <p>
+ * Results that wait to be loaded are capped by their size, classes that don't fit are left to load normally. That
+ * keeps classes that are targeted but never loaded from holding on to more than the cap.
+ */
+final class ClassWarmup {
+    private final ASMMixinTransformer transformer;
+    private final Map<String, Result> results = new ConcurrentHashMap<>();
+    private final AtomicLong heldBytes = new AtomicLong();
+    private final long capacity = Math.max(0, Configuration.WARMUP_MEMORY.get()) * 1024L * 1024L;
+    private final ForkJoinPool pool;
+
+    private ClassWarmup(ASMMixinTransformer transformer) {
+        this.transformer = transformer;
+        ClassLoader classLoader = ASMMixinTransformer.getClassLoader();
+        pool = new ForkJoinPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                (pool) -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("gudASM Warmup " + thread.getPoolIndex());
+                    thread.setContextClassLoader(classLoader);
+                    return thread;
+                },
+                null,
+                true
+        );
+    }
+
+    /**
+     * Starts warming up every class targeted by a registered transformer.
+     *
+     * @param transformer The transformer that will load the classes
+     */
+    static void start(ASMMixinTransformer transformer) {
+        ClassWarmup warmup = new ClassWarmup(transformer);
+        transformer.setWarmup(warmup);
+        warmup.pool.execute(() -> {
+            try {
+                warmup.enqueueTargets();
+            } finally {
+                // Queued classes still get warmed up, the threads go away once they are done
+                warmup.pool.shutdown();
+            }
+        });
+    }
+
+    private void enqueueTargets() {
+        RegistryImpl registry = RegistryImpl.INSTANCE;
+        Set<String> classes = new HashSet<>();
+        Set<String> packages = new HashSet<>();
+        for (TransformerIndex index : Arrays.asList(registry.getEarlyTransformerIndex(), registry.getTransformerIndex())) {
+            classes.addAll(index.getTargetClasses());
+            packages.addAll(index.getTargetPackages());
+        }
+        if (classes.isEmpty() && packages.isEmpty()) {
+            return;
+        }
+
+        Set<String> queued = new HashSet<>();
+        for (ModContainer container : FabricLoader.getInstance().getAllMods()) {
+            for (Path root : container.getRootPaths()) {
+                for (String name : classes) {
+                    Path path = root.resolve(name.replace('.', '/') + ".class");
+                    if (Files.isRegularFile(path) && queued.add(name)) {
+                        pool.execute(() -> warm(name, path));
+                    }
+                }
+                for (String packageName : packages) {
+                    Path directory = packageName.isEmpty() ? root : root.resolve(packageName.replace('.', '/'));
+                    if (!Files.isDirectory(directory)) {
+                        continue;
+                    }
+                    try (Stream<Path> stream = Files.walk(directory)) {
+                        stream.filter((path) -> path.toString().endsWith(".class")).forEach((path) -> {
+                            String file = root.relativize(path).toString();
+                            String name = file.substring(0, file.length() - 6).replace(root.getFileSystem().getSeparator(), ".");
+                            if (queued.add(name)) {
+                                pool.execute(() -> warm(name, path));
+                            }
+                        });
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+    }
+
+    private void warm(String name, Path path) {
+        if (transformer.isLoaded(name) || ASMMixinTransformer.BLACKLIST.matches(name)) {
+            return;
+        }
+
+        try {
+            byte[] original = Files.readAllBytes(path);
+            Result result = transformer.prepare(name, original);
+            long size = result.size();
+            if (heldBytes.addAndGet(size) > capacity) {
+                // Full, this one loads like any other class
+                heldBytes.addAndGet(-size);
+                return;
+            }
+            results.put(name, result);
+            // Lost the race with the class loader, nobody will take this
+            if (transformer.isLoaded(name) && results.remove(name, result)) {
+                heldBytes.addAndGet(-size);
+            }
+        } catch (Throwable ignored) {
+            // The class gets transformed again when it loads, any errors show up there
+        }
+    }
+
+    /**
+     * Takes the warmed up result for a class.
+     *
+     * @param name     The name of the class
+     * @param original The bytes the class loader found
+     * @return The result, or null if there is none for these bytes
+     */
+    Result take(String name, byte[] original) {
+        Result result = results.remove(name);
+        if (result == null) {
+            return null;
+        }
+        heldBytes.addAndGet(-result.size());
+        return result.original.equals(ClassHash.of(original)) ? result : null;
+    }
+
+    /**
+     * A class that went through the early transformers and the late ones.
+     */
+    static final class Result {
+        private final ClassHash original;
+        private final byte[] earlyBytes;
+        private final List<Transformer> earlyModifiers;
+        private final boolean shouldBootstrap;
+        private final byte[] bytes;
+        private final List<Transformer> modifiers;
+        private final MetricsImpl.Recording earlyMetrics;
+        private final MetricsImpl.Recording metrics;
+
+        Result(
+                ClassHash original,
+                byte[] earlyBytes,
+                List<Transformer> earlyModifiers,
+                boolean shouldBootstrap,
+                byte[] bytes,
+                List<Transformer> modifiers,
+                MetricsImpl.Recording earlyMetrics,
+                MetricsImpl.Recording metrics
+        ) {
+            this.original = original;
+            this.earlyBytes = earlyBytes;
+            this.earlyModifiers = earlyModifiers;
+            this.shouldBootstrap = shouldBootstrap;
+            this.bytes = bytes;
+            this.modifiers = modifiers;
+            this.earlyMetrics = earlyMetrics;
+            this.metrics = metrics;
+        }
+
+        private long size() {
+            return earlyBytes.length + (bytes == earlyBytes ? 0 : bytes.length);
+        }
+
+        /**
+         * Counts the metrics of the early transformers, once the early result is used.
+         */
+        void recordEarlyMetrics() {
+            if (earlyMetrics != null) {
+                earlyMetrics.replay();
+            }
+        }
+
+        /**
+         * Counts the metrics of the late transformers, once the late result is used.
+         */
+        void recordMetrics() {
+            if (metrics != null) {
+                metrics.replay();
+            }
+        }
+
+        /**
+         * Gets the class after the early transformers, this is what Mixin gets.
+         *
+         * @return The bytes
+         */
+        byte[] getEarlyBytes() {
+            return earlyBytes;
+        }
+
+        List<Transformer> getEarlyModifiers() {
+            return earlyModifiers;
+        }
+
+        boolean shouldBootstrap() {
+            return shouldBootstrap;
+        }
+
+        /**
+         * Gets the class after the late transformers, only valid if Mixin didn't change the class.
+         *
+         * @return The bytes
+         */
+        byte[] getBytes() {
+            return bytes;
+        }
+
+        List<Transformer> getModifiers() {
+            return modifiers;
+        }
+    }
+}
@@ -12,6 +12,7 @@ import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Basic config for the mod
@@ -20,25 +21,85 @@ public class Configuration {
     /**
      * Selects the enable class cache, if available.
      */
-    public static final Value<String> ENABLED_CACHE = new ListValue("cacheType", RegistryImpl.INSTANCE.getCacheNames());
+    public static final Value<String> ENABLED_CACHE = new ListValue("cacheType", RegistryImpl.INSTANCE::getCacheNames);
 
     /**
      * Enables the cache.
      */
     public static final Value<Boolean> ENABLE_CACHE = new BooleanValue("cacheEnable", true);
 
+    /**
+     * Enables the built-in disk class cache.
+     */
+    public static final Value<Boolean> DISK_CACHE = new BooleanValue("cacheDisk", false);
+
+    /**
+     * Transforms targeted classes on a background pool before they are loaded.
+     */
+    public static final Value<Boolean> WARMUP = new BooleanValue("warmup", false);
+
+    /**
+     * How many megabytes of warmed up classes can wait to be loaded, classes past that are not kept.
+     */
+    public static final Value<Integer> WARMUP_MEMORY = new IntValue("warmupMemory", 32);
+
+    /**
+     * Shares owner, name and descriptor strings between parsed classes so matching them is a reference check.
+     */
+    public static final Value<Boolean> INTERN_SYMBOLS = new BooleanValue("internSymbols", false);
+
+    /**
+     * Collects transformer timings and writes a report on shutdown.
+     */
+    public static final Value<Boolean> METRICS = new BooleanValue("metrics", false);
+
     /**
      * The class dumping mode for debugging.
      */
     public static final Value<DumpMode> DUMP = new EnumValue<>("dump", DumpMode.OFF);
 
+    /**
+     * How many megabytes of classes can wait to be dumped before class loading waits for the dump to catch up.
+     */
+    public static final Value<Integer> DUMP_MEMORY = new IntValue("dumpMemory", 64);
+
+    /**
+     * Comma separated class name globs, only matching classes get dumped if there are any.
+     */
+    public static final Value<String> DUMP_INCLUDE = new StringValue("dumpInclude", "");
+
+    /**
+     * Comma separated class name globs, matching classes never get dumped.
+     */
+    public static final Value<String> DUMP_EXCLUDE = new StringValue("dumpExclude", "");
+
+    /**
+     * Comma separated transformer names, only classes changed by one of them get dumped if there are any.
+     */
+    public static final Value<String> DUMP_TRANSFORMERS = new StringValue("dumpTransformers", "");
+
+    /**
+     * Classes with at least this many methods get their method transformers run on several threads, 0 turns it off.
+     */
+    public static final Value<Integer> PARALLEL_METHODS = new IntValue("parallelMethods", 64);
+
     private static final Map<String, Value<?>> VALUES;
 
     static {
         Map<String, Value<?>> values = new Object2ObjectOpenHashMap<>();
         values.put(ENABLED_CACHE.getName(), ENABLED_CACHE);
         values.put(ENABLE_CACHE.getName(), ENABLE_CACHE);
+        values.put(DISK_CACHE.getName(), DISK_CACHE);
+        values.put(WARMUP.getName(), WARMUP);
+        values.put(WARMUP_MEMORY.getName(), WARMUP_MEMORY);
+        values.put(INTERN_SYMBOLS.getName(), INTERN_SYMBOLS);
+        values.put(METRICS.getName(), METRICS);
         values.put(DUMP.getName(), DUMP);
+        values.put(DUMP_MEMORY.getName(), DUMP_MEMORY);
+        values.put(DUMP_INCLUDE.getName(), DUMP_INCLUDE);
+        values.put(DUMP_EXCLUDE.getName(), DUMP_EXCLUDE);
+        values.put(DUMP_TRANSFORMERS.getName(), DUMP_TRANSFORMERS);
+        values.put(PARALLEL_METHODS.getName(), PARALLEL_METHODS);
         VALUES = Collections.unmodifiableMap(values);
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -117,8 +178,7 @@ public class Configuration {
         for (Value<?> value : VALUES.values()) {
             String key = value.getName();
             keys.add(key);
-            Object valueValue = value.get();
-            options.put(key, valueValue == null ? "" : String.valueOf(valueValue).toLowerCase());
+            options.put(key, value.serialize());
             shouldSave |= value.isDirty();
             value.clean();
         }
@@ -196,6 +256,10 @@ public class Configuration {
             dirty = true;
         }
 
+        String serialize() {
+            return value == null ? "" : String.valueOf(value).toLowerCase();
+        }
+
         boolean isDirty() {
             return dirty;
         }
@@ -205,11 +269,23 @@ public class Configuration {
         }
     }
 
+    // The options are only known once everything is registered, which happens after the config is read
     private static class ListValue extends Value<String> {
-        ListValue(String name, List<String> values) {
-            super(name, values.isEmpty() ? null : values.get(0), (key) ->
-                    values.contains(key) ? key : null
-            );
+        private final Supplier<List<String>> values;
+
+        ListValue(String name, Supplier<List<String>> values) {
+            super(name, null, String::trim);
+            this.values = values;
+        }
+
+        @Override
+        public String get() {
+            String value = super.get();
+            List<String> values = this.values.get();
+            if (value != null && values.contains(value)) {
+                return value;
+            }
+            return values.isEmpty() ? null : values.get(0);
         }
     }
 
@@ -226,6 +302,31 @@ public class Configuration {
         }
     }
 
+    // Class and transformer names are case sensitive, these are saved as they are
+    private static class StringValue extends Value<String> {
+        StringValue(String name, String defaultValue) {
+            super(name, defaultValue, String::trim);
+        }
+
+        @Override
+        String serialize() {
+            String value = get();
+            return value == null ? "" : value;
+        }
+    }
+
+    private static class IntValue extends Value<Integer> {
+        IntValue(String name, int defaultValue) {
+            super(name, defaultValue, (key) -> {
+                try {
+                    return Integer.valueOf(key.trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            });
+        }
+    }
+
     private static class BooleanValue extends Value<Boolean> {
         BooleanValue(String name, boolean defaultValue) {
             super(name, defaultValue, Boolean::valueOf);
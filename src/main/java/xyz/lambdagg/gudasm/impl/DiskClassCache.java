@@ -0,0 +1,376 @@
+package xyz.lambdagg.gudasm.impl;
+
+import net.fabricmc.loader.api.FabricLoader;
+import xyz.lambdagg.gudasm.api.v1.ClassCache;
+import xyz.lambdagg.gudasm.api.v1.Identifier;
+import xyz.lambdagg.gudasm.util.ClassHash;
+import xyz.lambdagg.gudasm.util.FileUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * The built-in class cache, stores transformed classes under the game directory.
+ * <p>
+ * Everything lives in a single append-only pack file that gets memory mapped when the cache is loaded. The pack is a
+ * short header followed by records, each entry record is a fixed size header and the class bytes. Entries only count
+ * once a commit record follows them, anything after the last commit is a torn write and gets cut off on load.
+ * <p>
+ * Entries are keyed by a hash of the original class and scoped to the fingerprint of the registry, entries with
+ * another fingerprint are never served and get dropped once they take up enough space to be worth compacting.
+ */
+public class DiskClassCache implements ClassCache {
+    private static final Identifier NAME = new Identifier("gud_asm", "disk");
+
+    private static final int MAGIC = 0x47415343; // GASC
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+
+    private static final int TAG_ENTRY = 0x454E5452; // ENTR
+    private static final int TAG_COMMIT = 0x434F4D54; // COMT
+    // tag, length, fingerprint, hash, crc
+    private static final int ENTRY_SIZE = 4 + 4 + 8 + 16 + 4;
+    // tag, padding, offset of the commit
+    private static final int COMMIT_SIZE = 4 + 4 + 8;
+
+    // Don't bother rewriting the pack for less than this
+    private static final long COMPACT_THRESHOLD = 1 << 20;
+    // The pack gets mapped as a single buffer and entries are found by int offsets
+    private static final long MAX_PACK_SIZE = Integer.MAX_VALUE;
+
+    private final Map<ClassHash, byte[]> pending = new ConcurrentHashMap<>();
+    private volatile Pack pack = new Pack(null, Collections.emptyMap());
+    private Path path;
+    private FileChannel channel;
+    private long fingerprint;
+    private long liveBytes;
+    private long staleBytes;
+
+    @Override
+    public Identifier getName() {
+        return NAME;
+    }
+
+    @Override
+    public void load() throws IOException {
+        load(RegistryImpl.INSTANCE.getFingerprint());
+    }
+
+    @Override
+    public synchronized void load(long fingerprint) throws IOException {
+        Path root = FabricLoader.getInstance().getGameDir().resolve("gudASMCache");
+        Files.createDirectories(root);
+        path = root.resolve("classes.pack");
+        this.fingerprint = fingerprint;
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_SIZE || size > MAX_PACK_SIZE || !checkHeader()) {
+            reset();
+            size = HEADER_SIZE;
+        }
+
+        long committed = map(size);
+        if (committed != size) {
+            // Whatever is past the last commit never finished writing
+            channel.truncate(committed);
+            map(committed);
+        }
+
+        // Leftovers from older cache layouts, get rid of them without holding up class loading
+        Path pack = path;
+        Thread cleaner = new Thread(() -> {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+                for (Path path : stream) {
+                    if (!path.equals(pack)) {
+                        FileUtils.delete(path);
+                    }
+                }
+            } catch (IOException ignored) {
+            }
+        }, "gudASM Cache Cleaner");
+        cleaner.setDaemon(true);
+        cleaner.start();
+    }
+
+    private boolean checkHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        return header.remaining() == HEADER_SIZE &&
+                header.getInt() == MAGIC &&
+                header.getInt() == VERSION;
+    }
+
+    private void reset() throws IOException {
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(channel, header, 0);
+        channel.force(false);
+    }
+
+    /**
+     * Maps the pack and builds the index of it.
+     *
+     * @param size The size of the pack
+     * @return The end of the last commit
+     */
+    private long map(long size) throws IOException {
+        MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        Map<ClassHash, Entry> index = new HashMap<>();
+        liveBytes = 0;
+        staleBytes = 0;
+        List<Entry> batch = new ArrayList<>();
+        int limit = mapping.limit();
+        int committed = HEADER_SIZE;
+        int position = HEADER_SIZE;
+
+        while (limit - position >= 8) {
+            int tag = mapping.getInt(position);
+            if (tag == TAG_ENTRY) {
+                if (limit - position < ENTRY_SIZE) {
+                    break;
+                }
+                int length = mapping.getInt(position + 4);
+                if (length < 0 || (long) position + ENTRY_SIZE + length > limit) {
+                    break;
+                }
+                batch.add(new Entry(
+                        mapping.getLong(position + 8),
+                        new ClassHash(mapping.getLong(position + 16), mapping.getLong(position + 24)),
+                        position + ENTRY_SIZE,
+                        length,
+                        mapping.getInt(position + 32)
+                ));
+                position += ENTRY_SIZE + length;
+            } else if (tag == TAG_COMMIT) {
+                if (limit - position < COMMIT_SIZE || mapping.getLong(position + 8) != position) {
+                    break;
+                }
+                for (Entry entry : batch) {
+                    if (entry.fingerprint != fingerprint) {
+                        staleBytes += ENTRY_SIZE + entry.length;
+                        continue;
+                    }
+                    Entry previous = index.put(entry.hash, entry);
+                    if (previous != null) {
+                        staleBytes += ENTRY_SIZE + previous.length;
+                        liveBytes -= ENTRY_SIZE + previous.length;
+                    }
+                    liveBytes += ENTRY_SIZE + entry.length;
+                }
+                batch.clear();
+                position += COMMIT_SIZE;
+                committed = position;
+            } else {
+                break;
+            }
+        }
+
+        // Published together, the offsets of the index only make sense in their own mapping
+        pack = new Pack(mapping, index);
+        return committed;
+    }
+
+    @Override
+    public synchronized void save() throws IOException {
+        if (channel == null) {
+            return;
+        }
+
+        Map<ClassHash, byte[]> entries = new HashMap<>(pending);
+        long added = sizeOf(entries.values());
+        // A pack that would grow past what can be mapped gets rewritten instead, without the live entries if needed
+        boolean full = channel.size() + added > MAX_PACK_SIZE;
+        boolean compact = full || staleBytes > COMPACT_THRESHOLD && staleBytes > liveBytes;
+        if (entries.isEmpty() && !compact) {
+            return;
+        }
+        if (full && HEADER_SIZE + added > MAX_PACK_SIZE) {
+            // Not even an empty pack has room for these, they are only kept in memory
+            return;
+        }
+
+        boolean keepLive = HEADER_SIZE + liveBytes + added <= MAX_PACK_SIZE;
+        if (!compact || !compact(entries, keepLive)) {
+            if (full) {
+                // The pack could not be replaced and there is no room left to append
+                return;
+            }
+            append(entries);
+        }
+        // Serve the new entries from the pack from now on
+        map(channel.size());
+        pending.keySet().removeAll(entries.keySet());
+    }
+
+    /**
+     * Adds new entries to the end of the pack, they only become valid once the commit is written.
+     *
+     * @param entries The new entries
+     */
+    private void append(Map<ClassHash, byte[]> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        long position = channel.size();
+        for (Map.Entry<ClassHash, byte[]> entry : entries.entrySet()) {
+            position += writeEntry(channel, position, fingerprint, entry.getKey(), entry.getValue());
+        }
+        channel.force(false);
+        writeCommit(channel, position);
+        channel.force(false);
+    }
+
+    /**
+     * Rewrites the pack without any stale entries and swaps it in.
+     *
+     * @param entries  The new entries
+     * @param keepLive False to start over with only the new entries
+     * @return True if the pack was replaced
+     */
+    private boolean compact(Map<ClassHash, byte[]> entries, boolean keepLive) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel output = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            long position = writeFully(output, header, 0);
+
+            Pack pack = keepLive ? this.pack : new Pack(null, Collections.emptyMap());
+            for (Entry entry : pack.index.values()) {
+                if (!entries.containsKey(entry.hash)) {
+                    byte[] bytes = new byte[entry.length];
+                    pack.mapping.get(entry.offset, bytes);
+                    position += writeEntry(output, position, fingerprint, entry.hash, bytes);
+                }
+            }
+            for (Map.Entry<ClassHash, byte[]> entry : entries.entrySet()) {
+                position += writeEntry(output, position, fingerprint, entry.getKey(), entry.getValue());
+            }
+            writeCommit(output, position);
+            output.force(false);
+        }
+
+        try {
+            // This fails on systems that don't let you replace a mapped file, just append in that case
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            return false;
+        }
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return true;
+    }
+
+    // The space the entries take up in the pack, along with their commit
+    private static long sizeOf(Collection<byte[]> entries) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        long size = COMMIT_SIZE;
+        for (byte[] bytes : entries) {
+            size += ENTRY_SIZE + bytes.length;
+        }
+        return size;
+    }
+
+    private static long writeEntry(FileChannel channel, long position, long fingerprint, ClassHash hash, byte[] bytes) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+
+        ByteBuffer header = ByteBuffer.allocate(ENTRY_SIZE);
+        header.putInt(TAG_ENTRY)
+                .putInt(bytes.length)
+                .putLong(fingerprint)
+                .putLong(hash.getHigh())
+                .putLong(hash.getLow())
+                .putInt((int) crc.getValue())
+                .flip();
+        position += writeFully(channel, header, position);
+        writeFully(channel, ByteBuffer.wrap(bytes), position);
+        return ENTRY_SIZE + bytes.length;
+    }
+
+    private static void writeCommit(FileChannel channel, long position) throws IOException {
+        ByteBuffer commit = ByteBuffer.allocate(COMMIT_SIZE);
+        commit.putInt(TAG_COMMIT)
+                .putInt(0)
+                .putLong(position)
+                .flip();
+        writeFully(channel, commit, position);
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    @Override
+    public Optional<byte[]> getEntry(byte[] original) {
+        ClassHash hash = ClassHash.of(original);
+        byte[] modified = pending.get(hash);
+        if (modified != null) {
+            return Optional.of(modified);
+        }
+
+        Pack pack = this.pack;
+        Entry entry = pack.index.get(hash);
+        if (entry == null) {
+            return Optional.empty();
+        }
+
+        byte[] bytes = new byte[entry.length];
+        pack.mapping.get(entry.offset, bytes);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        if ((int) crc.getValue() != entry.crc) {
+            return Optional.empty();
+        }
+        return Optional.of(bytes);
+    }
+
+    @Override
+    public void putEntry(byte[] original, byte[] modified) {
+        if (channel != null) {
+            pending.put(ClassHash.of(original), modified);
+        }
+    }
+
+    // A mapping of the pack and the index of its entries
+    private static final class Pack {
+        private final MappedByteBuffer mapping;
+        private final Map<ClassHash, Entry> index;
+
+        private Pack(MappedByteBuffer mapping, Map<ClassHash, Entry> index) {
+            this.mapping = mapping;
+            this.index = index;
+        }
+    }
+
+    private static final class Entry {
+        private final long fingerprint;
+        private final ClassHash hash;
+        private final int offset;
+        private final int length;
+        private final int crc;
+
+        private Entry(long fingerprint, ClassHash hash, int offset, int length, int crc) {
+            this.fingerprint = fingerprint;
+            this.hash = hash;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+}
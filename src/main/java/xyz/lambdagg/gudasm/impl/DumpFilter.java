@@ -0,0 +1,91 @@
+package xyz.lambdagg.gudasm.impl;
+
+import xyz.lambdagg.gudasm.api.v1.Transformer;
+import xyz.lambdagg.gudasm.util.Glob;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides which classes get dumped, checked before a class is queued so filtered classes cost nothing.
+ * <p>
+ * Globs match whole class names with dots, a * matches anything including dots.
+ */
+final class DumpFilter {
+    private final List<Glob> includes;
+    private final List<Glob> excludes;
+    private final Set<String> transformers;
+
+    private DumpFilter(List<Glob> includes, List<Glob> excludes, Set<String> transformers) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.transformers = transformers;
+    }
+
+    /**
+     * Creates the filter from the config.
+     *
+     * @return The filter
+     */
+    static DumpFilter fromConfig() {
+        List<Glob> includes = new ArrayList<>();
+        for (String pattern : split(Configuration.DUMP_INCLUDE.get())) {
+            includes.add(Glob.of(pattern.replace('/', '.')));
+        }
+        List<Glob> excludes = new ArrayList<>();
+        for (String pattern : split(Configuration.DUMP_EXCLUDE.get())) {
+            excludes.add(Glob.of(pattern.replace('/', '.')));
+        }
+        return new DumpFilter(includes, excludes, new HashSet<>(split(Configuration.DUMP_TRANSFORMERS.get())));
+    }
+
+    private static List<String> split(String value) {
+        List<String> parts = new ArrayList<>();
+        if (value != null) {
+            for (String part : value.split(",")) {
+                part = part.trim();
+                if (!part.isEmpty()) {
+                    parts.add(part);
+                }
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Checks if a class should be dumped.
+     *
+     * @param name      The name of the class
+     * @param modifiers The transformers that changed the class
+     * @return True if the class should be dumped
+     */
+    boolean matches(String name, List<Transformer> modifiers) {
+        if (!transformers.isEmpty() && !isModifiedByFiltered(modifiers)) {
+            return false;
+        }
+        if (!includes.isEmpty() && !matchesAny(includes, name)) {
+            return false;
+        }
+        return !matchesAny(excludes, name);
+    }
+
+    private boolean isModifiedByFiltered(List<Transformer> modifiers) {
+        for (Transformer modifier : modifiers) {
+            if (transformers.contains(modifier.getName().toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(List<Glob> globs, String name) {
+        for (Glob glob : globs) {
+            if (glob.matches(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,56 @@
+package xyz.lambdagg.gudasm.impl;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * A class writer that works out common super classes with {@link ClassHierarchy} instead of loading classes.
+ * <p>
+ * Loading classes from here could load them before their transformers are ready, or deadlock the class loader.
+ */
+class HierarchyClassWriter extends ClassWriter {
+    private ClassHierarchy.Info self;
+
+    /**
+     * Creates a writer for a class.
+     *
+     * @param flags The writer flags
+     * @param node  The class that will be written, used to see its current supertypes
+     */
+    HierarchyClassWriter(int flags, @Nullable ClassNode node) {
+        this(null, flags, node);
+    }
+
+    /**
+     * Creates a writer for a class that copies unchanged parts from a reader.
+     *
+     * @param reader The reader of the original class
+     * @param flags  The writer flags
+     * @param node   The class that will be written, used to see its current supertypes
+     */
+    HierarchyClassWriter(@Nullable ClassReader reader, int flags, @Nullable ClassNode node) {
+        super(reader, flags);
+        if (node != null) {
+            describe(node.access, node.name, node.superName, node.interfaces == null ? null : node.interfaces.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * Sets the supertypes of the class that will be written, for writers that don't get a tree.
+     *
+     * @param access     The access flags of the class
+     * @param name       The internal name of the class
+     * @param superName  The internal name of the super class
+     * @param interfaces The internal names of the interfaces
+     */
+    void describe(int access, String name, @Nullable String superName, @Nullable String[] interfaces) {
+        self = new ClassHierarchy.Info(name, superName, interfaces == null ? new String[0] : interfaces, access);
+    }
+
+    @Override
+    protected String getCommonSuperClass(String type1, String type2) {
+        return ClassHierarchy.INSTANCE.getCommonSuperClass(type1, type2, self);
+    }
+}
@@ -0,0 +1,249 @@
+package xyz.lambdagg.gudasm.impl;
+
+import xyz.lambdagg.gudasm.api.v1.AsmMetrics;
+import xyz.lambdagg.gudasm.api.v1.Identifier;
+import xyz.lambdagg.gudasm.api.v1.Transformer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Basic metrics implementation, everything is a LongAdder so the class loading threads don't fight over counters
+public final class MetricsImpl implements AsmMetrics {
+    public static final MetricsImpl INSTANCE = new MetricsImpl();
+
+    // Keep the report readable
+    private static final int REPORTED_CLASSES = 50;
+
+    private final Map<Transformer, Counter> transformers = new ConcurrentHashMap<>();
+    private final Counter[] stages = new Counter[Stage.values().length];
+    private final Map<String, Long> classes = new ConcurrentHashMap<>();
+    private final ThreadLocal<Recording> recording = new ThreadLocal<>();
+    private volatile boolean enabled = false;
+
+    private MetricsImpl() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new Counter();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts timing something.
+     *
+     * @return The start time, or 0 if metrics are disabled
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Starts holding back everything this thread records, for work that might get thrown away.
+     *
+     * @return The recording, or null if metrics are disabled
+     */
+    Recording startRecording() {
+        if (!enabled) {
+            return null;
+        }
+        Recording recording = new Recording();
+        this.recording.set(recording);
+        return recording;
+    }
+
+    /**
+     * Stops holding back what this thread records.
+     */
+    void stopRecording() {
+        recording.remove();
+    }
+
+    private void record(Runnable event) {
+        Recording recording = this.recording.get();
+        if (recording != null) {
+            recording.events.add(event);
+        } else {
+            event.run();
+        }
+    }
+
+    void recordStage(Stage stage, long start, int bytes) {
+        if (start != 0) {
+            long time = System.nanoTime() - start;
+            record(() -> stages[stage.ordinal()].add(time, bytes));
+        }
+    }
+
+    void recordTransformer(Transformer transformer, long start, boolean modified) {
+        if (start != 0) {
+            recordTransformer(transformer, start, System.nanoTime(), modified);
+        }
+    }
+
+    void recordTransformer(Transformer transformer, long start, long end, boolean modified) {
+        if (start != 0) {
+            record(() -> {
+                Counter counter = transformers.computeIfAbsent(transformer, (key) -> new Counter());
+                counter.add(end - start, 0);
+                if (modified) {
+                    counter.modified.increment();
+                }
+            });
+        }
+    }
+
+    /**
+     * Records a finished class.
+     *
+     * @param name         The name of the class
+     * @param start        The time the class started transforming
+     * @param bytes        The finished class
+     * @param transformers The transformers that changed the class, they get credited with its size
+     */
+    void recordClass(String name, long start, byte[] bytes, List<Transformer> transformers) {
+        if (start == 0) {
+            return;
+        }
+        long time = System.nanoTime() - start;
+        int length = bytes == null ? 0 : bytes.length;
+        stages[Stage.TOTAL.ordinal()].add(time, length);
+        classes.merge(name, time, Long::sum);
+        for (Transformer transformer : transformers) {
+            this.transformers.computeIfAbsent(transformer, (key) -> new Counter()).bytes.add(length);
+        }
+    }
+
+    @Override
+    public List<TransformerStats> getTransformerStats() {
+        List<TransformerStats> stats = new ArrayList<>();
+        transformers.forEach((transformer, counter) -> stats.add(new Snapshot(transformer.getName(), counter)));
+        return stats;
+    }
+
+    @Override
+    public Stats getStageStats(Stage stage) {
+        return new Snapshot(null, stages[stage.ordinal()]);
+    }
+
+    @Override
+    public Map<String, Long> getClassTimes() {
+        return new HashMap<>(classes);
+    }
+
+    /**
+     * Writes a report of everything, slowest first.
+     *
+     * @param path The file to write to
+     */
+    void writeReport(Path path) throws IOException {
+        List<TransformerStats> transformers = getTransformerStats();
+        transformers.sort(Comparator.comparingLong(TransformerStats::getNanos).reversed());
+        List<Map.Entry<String, Long>> classes = new ArrayList<>(getClassTimes().entrySet());
+        classes.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("Stages\n");
+            for (Stage stage : Stage.values()) {
+                Stats stats = getStageStats(stage);
+                writer.write(String.format("  %-8s %10.3f ms %10d calls %12d bytes\n", stage, stats.getNanos() / 1e6, stats.getCount(), stats.getBytes()));
+            }
+
+            writer.write("\nTransformers\n");
+            for (TransformerStats stats : transformers) {
+                writer.write(String.format(
+                        "  %-48s %10.3f ms %10d calls %8d modified %12d bytes\n",
+                        stats.getName(), stats.getNanos() / 1e6, stats.getCount(), stats.getModified(), stats.getBytes()
+                ));
+            }
+
+            writer.write(String.format("\nSlowest classes (%d of %d)\n", Math.min(REPORTED_CLASSES, classes.size()), classes.size()));
+            for (Map.Entry<String, Long> entry : classes.subList(0, Math.min(REPORTED_CLASSES, classes.size()))) {
+                writer.write(String.format("  %-80s %10.3f ms\n", entry.getKey(), entry.getValue() / 1e6));
+            }
+        }
+    }
+
+    /**
+     * Metrics that were held back, they only count once they are replayed.
+     */
+    static final class Recording {
+        private final List<Runnable> events = new ArrayList<>();
+
+        /**
+         * Adds everything in this recording to the metrics.
+         */
+        void replay() {
+            for (Runnable event : events) {
+                event.run();
+            }
+            events.clear();
+        }
+    }
+
+    private static final class Counter {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder modified = new LongAdder();
+
+        void add(long time, int bytes) {
+            count.increment();
+            nanos.add(time);
+            this.bytes.add(bytes);
+        }
+    }
+
+    private static final class Snapshot implements TransformerStats {
+        private final Identifier name;
+        private final long count;
+        private final long nanos;
+        private final long bytes;
+        private final long modified;
+
+        private Snapshot(Identifier name, Counter counter) {
+            this.name = name;
+            count = counter.count.sum();
+            nanos = counter.nanos.sum();
+            bytes = counter.bytes.sum();
+            modified = counter.modified.sum();
+        }
+
+        @Override
+        public Identifier getName() {
+            return name;
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public long getModified() {
+            return modified;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package xyz.lambdagg.gudasm.impl;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import xyz.lambdagg.gudasm.api.v1.MethodTransformer;
+import xyz.lambdagg.gudasm.api.v1.Transformer;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a method transformer over the methods of a big class on several threads.
+ * <p>
+ * The methods are split into ranges that get transformed on a shared pool. Every range collects its flags on its own,
+ * they are merged into the flags of the class once every method is done.
+ */
+final class ParallelMethodTransform {
+    private static final int MIN_RANGE = 4;
+
+    private static ForkJoinPool pool;
+
+    private ParallelMethodTransform() {
+    }
+
+    /**
+     * Checks if a class has enough methods to be worth splitting up.
+     *
+     * @param classNode The class
+     * @return True if its methods should be transformed on several threads
+     */
+    static boolean shouldRun(ClassNode classNode) {
+        int threshold = Configuration.PARALLEL_METHODS.get();
+        return threshold > 0 && classNode.methods.size() >= threshold && getPool().getParallelism() > 1;
+    }
+
+    /**
+     * Transforms every method of a class.
+     *
+     * @param classNode   The class, with the code of every method loaded
+     * @param transformer The transformer
+     * @param flags       The flags of the class
+     * @return True if any method was transformed
+     */
+    static boolean run(ClassNode classNode, MethodTransformer transformer, TransformerFlagsImpl flags) {
+        MethodNode[] methods = classNode.methods.toArray(new MethodNode[0]);
+        ForkJoinPool pool = getPool();
+        int range = Math.max(MIN_RANGE, methods.length / (pool.getParallelism() * 4));
+        Task task = new Task(classNode, transformer, methods, 0, methods.length, range);
+        pool.invoke(task);
+
+        boolean modified = false;
+        for (MethodFlags collected : task.collect(new ArrayList<>())) {
+            modified |= collected.mergeInto(flags);
+        }
+        return modified;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            ClassLoader classLoader = ASMMixinTransformer.getClassLoader();
+            // The pool index isn't set until the thread starts, so the names need their own counter
+            AtomicInteger threads = new AtomicInteger();
+            pool = new ForkJoinPool(
+                    Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                    (pool) -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        thread.setName("gudASM Methods " + threads.getAndIncrement());
+                        thread.setContextClassLoader(classLoader);
+                        return thread;
+                    },
+                    null,
+                    false
+            );
+        }
+        return pool;
+    }
+
+    // Splits the methods in half until the ranges are small enough, the leaves keep their flags for the merge
+    private static final class Task extends RecursiveAction {
+        private final ClassNode classNode;
+        private final MethodTransformer transformer;
+        private final MethodNode[] methods;
+        private final int start;
+        private final int end;
+        private final int range;
+        private Task left;
+        private Task right;
+        private MethodFlags flags;
+
+        private Task(ClassNode classNode, MethodTransformer transformer, MethodNode[] methods, int start, int end, int range) {
+            this.classNode = classNode;
+            this.transformer = transformer;
+            this.methods = methods;
+            this.start = start;
+            this.end = end;
+            this.range = range;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= range) {
+                flags = new MethodFlags();
+                for (int i = start; i < end; i++) {
+                    if (transformer.transformMethod(classNode, methods[i], flags)) {
+                        flags.markChanged(methods[i]);
+                    }
+                }
+                return;
+            }
+
+            int middle = (start + end) >>> 1;
+            left = new Task(classNode, transformer, methods, start, middle, range);
+            right = new Task(classNode, transformer, methods, middle, end, range);
+            invokeAll(left, right);
+        }
+
+        // Gathers the leaf flags in method order
+        List<MethodFlags> collect(List<MethodFlags> list) {
+            if (flags != null) {
+                list.add(flags);
+            } else {
+                left.collect(list);
+                right.collect(list);
+            }
+            return list;
+        }
+    }
+
+    // The flags of one range of methods, nothing is shared between threads until the merge
+    private static final class MethodFlags implements Transformer.Flags {
+        private boolean computeMaxes = false;
+        private boolean computeFrames = false;
+        private final Map<MethodNode, Integer> methods = new IdentityHashMap<>();
+        private final List<MethodNode> changed = new ArrayList<>();
+
+        @Override
+        public void requestMaxes() {
+            computeMaxes = true;
+        }
+
+        @Override
+        public void requestFrames() {
+            computeFrames = true;
+        }
+
+        @Override
+        public void loadCode(MethodNode method) {
+            // The code of every method is loaded before the methods are split up
+        }
+
+        @Override
+        public void markChanged(MethodNode method) {
+            changed.add(method);
+        }
+
+        @Override
+        public void requestMaxes(MethodNode method) {
+            methods.merge(method, ClassWriter.COMPUTE_MAXS, (a, b) -> a | b);
+        }
+
+        @Override
+        public void requestFrames(MethodNode method) {
+            methods.merge(method, ClassWriter.COMPUTE_FRAMES, (a, b) -> a | b);
+        }
+
+        // Returns true if a method was transformed
+        boolean mergeInto(TransformerFlagsImpl flags) {
+            if (computeMaxes) {
+                flags.requestMaxes();
+            }
+            if (computeFrames) {
+                flags.requestFrames();
+            }
+            for (Map.Entry<MethodNode, Integer> entry : methods.entrySet()) {
+                if ((entry.getValue() & ClassWriter.COMPUTE_FRAMES) != 0) {
+                    flags.requestFrames(entry.getKey());
+                } else {
+                    flags.requestMaxes(entry.getKey());
+                }
+            }
+            for (MethodNode method : changed) {
+                flags.markChanged(method);
+            }
+            return !changed.isEmpty();
+        }
+    }
+}
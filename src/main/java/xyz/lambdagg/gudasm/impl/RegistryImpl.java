@@ -1,10 +1,17 @@
 package xyz.lambdagg.gudasm.impl;
 
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+import org.spongepowered.asm.mixin.Mixins;
+import org.spongepowered.asm.mixin.transformer.Config;
 import xyz.lambdagg.gudasm.api.v1.AsmRegistry;
 import xyz.lambdagg.gudasm.api.v1.ClassCache;
 import xyz.lambdagg.gudasm.api.v1.Identifier;
 import xyz.lambdagg.gudasm.api.v1.Transformer;
+import xyz.lambdagg.gudasm.util.ClassHash;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -15,9 +22,14 @@ public class RegistryImpl implements AsmRegistry {
     private final List<Transformer> earlyTransformers = new LinkedList<>();
     private final List<Transformer> transformers = new LinkedList<>();
     private final List<ClassCache> classCaches = new LinkedList<>();
+    private final ClassCache diskCache = new DiskClassCache();
     private final Set<String> blacklist = new HashSet<>();
+    private final List<Identifier[]> phaseOrderings = new ArrayList<>();
 
     private volatile Boolean frozen = null;
+    private long fingerprint;
+    private TransformerIndex earlyTransformerIndex;
+    private TransformerIndex transformerIndex;
     @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
     private Optional<ClassCache> cache;
 
@@ -42,6 +54,14 @@ public class RegistryImpl implements AsmRegistry {
         transformers.add(transformer);
     }
 
+    @Override
+    public void addPhaseOrdering(Identifier first, Identifier second) {
+        if (frozen == null || frozen) {
+            throw new RuntimeException("Attempted to order phases outside initializer");
+        }
+        phaseOrderings.add(new Identifier[]{Objects.requireNonNull(first, "first"), Objects.requireNonNull(second, "second")});
+    }
+
     @Override
     public void registerClassCache(ClassCache cache) {
         if (frozen == null || frozen) {
@@ -54,6 +74,7 @@ public class RegistryImpl implements AsmRegistry {
     @SuppressWarnings("OptionalAssignedToNull")
     public Optional<ClassCache> getCache() {
         if (cache == null) {
+            List<ClassCache> classCaches = getClassCaches();
             if (classCaches.isEmpty() || !Configuration.ENABLE_CACHE.get()) {
                 cache = Optional.empty();
             } else {
@@ -76,8 +97,18 @@ public class RegistryImpl implements AsmRegistry {
         return cache;
     }
 
+    // The built-in cache goes last so it never shadows one that was registered
+    private List<ClassCache> getClassCaches() {
+        if (!Configuration.DISK_CACHE.get()) {
+            return classCaches;
+        }
+        List<ClassCache> caches = new ArrayList<>(classCaches);
+        caches.add(diskCache);
+        return caches;
+    }
+
     public List<String> getCacheNames() {
-        return classCaches.stream().map(ClassCache::getName).map(Identifier::toString).collect(Collectors.toList());
+        return getClassCaches().stream().map(ClassCache::getName).map(Identifier::toString).collect(Collectors.toList());
     }
 
     public List<Transformer> getTransformers() {
@@ -88,13 +119,120 @@ public class RegistryImpl implements AsmRegistry {
         return earlyTransformers;
     }
 
+    /**
+     * Gets the index of the transformers that run before Mixin.
+     * <p>
+     * This is only valid once the registry has been frozen.
+     *
+     * @return The index
+     */
+    TransformerIndex getEarlyTransformerIndex() {
+        return earlyTransformerIndex;
+    }
+
+    /**
+     * Gets the index of the transformers that run after Mixin.
+     * <p>
+     * This is only valid once the registry has been frozen.
+     *
+     * @return The index
+     */
+    TransformerIndex getTransformerIndex() {
+        return transformerIndex;
+    }
+
+    /**
+     * Gets the fingerprint of everything that can change a transformed class.
+     * <p>
+     * This is only valid once the registry has been frozen.
+     *
+     * @return The fingerprint
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
     @SuppressWarnings("NonAtomicOperationOnVolatileField")
     public void setFrozen(boolean frozen) {
+        boolean wasFrozen = this.frozen != null && this.frozen;
         if (this.frozen == null) {
             this.frozen = frozen;
         } else {
             this.frozen |= frozen;
         }
+        if (!wasFrozen && this.frozen) {
+            sort(earlyTransformers);
+            sort(transformers);
+            earlyTransformerIndex = new TransformerIndex(earlyTransformers);
+            transformerIndex = new TransformerIndex(transformers);
+            fingerprint = computeFingerprint();
+        }
+    }
+
+    private void sort(List<Transformer> transformers) {
+        List<Transformer> sorted = TransformerSorter.sort(transformers, phaseOrderings);
+        transformers.clear();
+        transformers.addAll(sorted);
+    }
+
+    /**
+     * Hashes the identity and version of every transformer along with the active Mixin configs and the mods that
+     * provide them. Updating a mod that does neither keeps the fingerprint, and the cache, intact.
+     *
+     * @return The fingerprint
+     */
+    private long computeFingerprint() {
+        FabricLoader loader = FabricLoader.getInstance();
+        StringBuilder builder = new StringBuilder();
+        builder.append("gud_asm@").append(getModVersion(loader, "gud_asm")).append('\n');
+        for (Transformer transformer : earlyTransformers) {
+            appendTransformer(builder.append("early:"), loader, transformer);
+        }
+        for (Transformer transformer : transformers) {
+            appendTransformer(builder.append("late:"), loader, transformer);
+        }
+
+        List<String> configs = new ArrayList<>();
+        for (Config config : Mixins.getConfigs()) {
+            configs.add(config.getName());
+        }
+        Collections.sort(configs);
+        Map<String, String> owners = findConfigOwners(loader, configs);
+        for (String config : configs) {
+            builder.append("mixin:").append(config).append('@').append(owners.getOrDefault(config, "unknown")).append('\n');
+        }
+
+        return ClassHash.of(builder.toString()).getHigh();
+    }
+
+    private static void appendTransformer(StringBuilder builder, FabricLoader loader, Transformer transformer) {
+        Identifier name = transformer.getName();
+        builder.append(name)
+                .append('@')
+                .append(getModVersion(loader, name.getModId()))
+                .append('=')
+                .append(transformer.getClass().getName())
+                .append('\n');
+    }
+
+    private static String getModVersion(FabricLoader loader, String modId) {
+        return loader.getModContainer(modId)
+                .map((container) -> container.getMetadata().getVersion().getFriendlyString())
+                .orElse("unknown");
+    }
+
+    // Mixin doesn't know which mod a config came from, look for the config file in the mods instead
+    private static Map<String, String> findConfigOwners(FabricLoader loader, List<String> configs) {
+        Map<String, String> owners = new HashMap<>();
+        for (ModContainer container : loader.getAllMods()) {
+            Path root = container.getRootPath();
+            for (String config : configs) {
+                if (!owners.containsKey(config) && Files.exists(root.resolve(config))) {
+                    owners.put(config, container.getMetadata().getId() + '@' + container.getMetadata().getVersion().getFriendlyString());
+                }
+            }
+        }
+        return owners;
     }
 
     public void setTransformer(ASMMixinTransformer transformer) {
@@ -1,11 +1,25 @@
 package xyz.lambdagg.gudasm.impl;
 
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.MethodNode;
 import xyz.lambdagg.gudasm.api.v1.Transformer;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
 public class TransformerFlagsImpl implements Transformer.Flags {
     private boolean computeMaxes = false;
     private boolean computeFrames = false;
+    private Map<MethodNode, Integer> methods = Collections.emptyMap();
+    private final Set<MethodNode> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean unreported = false;
+    private final ClassState state;
+
+    TransformerFlagsImpl(ClassState state) {
+        this.state = state;
+    }
 
     public void requestMaxes() {
         computeMaxes = true;
@@ -15,8 +29,98 @@ public class TransformerFlagsImpl implements Transformer.Flags {
         computeFrames = true;
     }
 
+    public void requestMaxes(MethodNode method) {
+        requestMethod(method, ClassWriter.COMPUTE_MAXS);
+    }
+
+    public void requestFrames(MethodNode method) {
+        requestMethod(method, ClassWriter.COMPUTE_FRAMES);
+    }
+
+    public void loadCode(MethodNode method) {
+        state.loadCode(method);
+    }
+
+    public void markChanged(MethodNode method) {
+        changed.add(method);
+    }
+
+    private void requestMethod(MethodNode method, int flags) {
+        changed.add(method);
+        if (methods.isEmpty()) {
+            methods = new IdentityHashMap<>();
+        }
+        methods.merge(method, flags, (a, b) -> a | b);
+    }
+
     public int getClassWriterFlags() {
         return (computeFrames ? ClassWriter.COMPUTE_FRAMES : 0) |
                 (computeMaxes ? ClassWriter.COMPUTE_MAXS : 0);
     }
+
+    /**
+     * Gets the methods that need their own frames or maxes, the ones the class flags already cover are left out.
+     *
+     * @return The methods and the writer flags they need
+     */
+    Map<MethodNode, Integer> getMethodFlags() {
+        if (computeFrames || methods.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (computeMaxes) {
+            methods.values().removeIf((flags) -> flags == ClassWriter.COMPUTE_MAXS);
+        }
+        return methods;
+    }
+
+    /**
+     * Forgets the method requests once the methods were computed.
+     */
+    void clearMethods() {
+        methods = Collections.emptyMap();
+    }
+
+    /**
+     * Moves the method requests over to the whole class and stops methods from being copied.
+     * <p>
+     * Used when the tree gets replaced, the requests and changes point at methods that are not in it anymore.
+     */
+    void forgetMethods() {
+        for (int flags : methods.values()) {
+            if ((flags & ClassWriter.COMPUTE_FRAMES) != 0) {
+                computeFrames = true;
+            } else {
+                computeMaxes = true;
+            }
+        }
+        methods = Collections.emptyMap();
+        changed.clear();
+        unreported = true;
+    }
+
+    /**
+     * Notes that a transformer that doesn't report its changed methods changed the class.
+     */
+    void markUnreported() {
+        unreported = true;
+    }
+
+    /**
+     * Checks if original methods can be copied as they are when writing the class.
+     *
+     * @return True if every change was reported and nothing needs computing for the whole class
+     */
+    boolean canCopyMethods() {
+        return !unreported && !computeFrames && !computeMaxes;
+    }
+
+    /**
+     * Checks if a method was reported as changed.
+     *
+     * @param method The method
+     * @return True if it was changed
+     */
+    boolean isChanged(MethodNode method) {
+        return changed.contains(method);
+    }
 }
@@ -0,0 +1,166 @@
+package xyz.lambdagg.gudasm.impl;
+
+import org.objectweb.asm.Type;
+import xyz.lambdagg.gudasm.api.v1.Transformer;
+import xyz.lambdagg.gudasm.api.v1.TransformerTargets;
+import xyz.lambdagg.gudasm.util.PackageTrie;
+
+import java.util.*;
+
+/**
+ * Finds the transformers that target a class.
+ * <p>
+ * Every lookup result is worked out ahead of time, finding the transformers for a class by name is a single hash or
+ * trie lookup. Results are indices into the transformer list in registration order.
+ */
+final class TransformerIndex {
+    private static final int[] NONE = new int[0];
+
+    private final Transformer[] transformers;
+    private final int[] untargeted;
+    private final Map<String, int[]> classes = new HashMap<>();
+    private final PackageTrie<int[]> packages = new PackageTrie<>();
+    private final Set<String> packageNames = new HashSet<>();
+    private final Map<String, int[]> annotations = new HashMap<>();
+
+    TransformerIndex(List<Transformer> transformers) {
+        this.transformers = transformers.toArray(new Transformer[0]);
+
+        TransformerTargets[] targets = new TransformerTargets[this.transformers.length];
+        Set<String> classNames = new HashSet<>();
+        Map<String, BitSet> annotationTargets = new HashMap<>();
+        BitSet untargeted = new BitSet();
+        for (int i = 0; i < this.transformers.length; i++) {
+            targets[i] = this.transformers[i].getTargets();
+            if (targets[i] == null) {
+                untargeted.set(i);
+                continue;
+            }
+            classNames.addAll(targets[i].getClasses());
+            this.packageNames.addAll(targets[i].getPackages());
+            for (Type annotation : targets[i].getAnnotations()) {
+                annotationTargets.computeIfAbsent(annotation.getDescriptor(), (key) -> new BitSet()).set(i);
+            }
+        }
+        this.untargeted = toArray(untargeted);
+
+        // A package result covers every package above it, a class result every package it is in
+        for (String packageName : packageNames) {
+            BitSet matches = (BitSet) untargeted.clone();
+            for (int i = 0; i < targets.length; i++) {
+                if (targets[i] != null && containsPackage(targets[i], packageName, true)) {
+                    matches.set(i);
+                }
+            }
+            packages.put(packageName, toArray(matches));
+        }
+        for (String className : classNames) {
+            BitSet matches = (BitSet) untargeted.clone();
+            for (int i = 0; i < targets.length; i++) {
+                if (targets[i] != null && (targets[i].getClasses().contains(className) || containsPackage(targets[i], className, false))) {
+                    matches.set(i);
+                }
+            }
+            classes.put(className, toArray(matches));
+        }
+        annotationTargets.forEach((descriptor, matches) -> annotations.put(descriptor, toArray(matches)));
+    }
+
+    private static boolean containsPackage(TransformerTargets targets, String name, boolean isPackage) {
+        for (String packageName : targets.getPackages()) {
+            if (packageName.isEmpty() || (isPackage && name.equals(packageName)) ||
+                    (name.length() > packageName.length() && name.startsWith(packageName) && name.charAt(packageName.length()) == '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] toArray(BitSet set) {
+        return set.isEmpty() ? NONE : set.stream().toArray();
+    }
+
+    /**
+     * Gets every class that is targeted by name.
+     *
+     * @return The class names
+     */
+    Set<String> getTargetClasses() {
+        return Collections.unmodifiableSet(classes.keySet());
+    }
+
+    /**
+     * Gets every targeted package.
+     *
+     * @return The package names
+     */
+    Set<String> getTargetPackages() {
+        return Collections.unmodifiableSet(packageNames);
+    }
+
+    /**
+     * Gets the descriptors of every targeted annotation.
+     *
+     * @return The annotation descriptors
+     */
+    Set<String> getTargetAnnotations() {
+        return Collections.unmodifiableSet(annotations.keySet());
+    }
+
+    /**
+     * Checks if any transformer might want a class by its name alone, annotation targets are not checked.
+     *
+     * @param name The name of the class
+     * @return True if a transformer targets the class
+     */
+    boolean targets(String name) {
+        return untargeted.length != 0 || classes.containsKey(name) || packages.find(name) != null;
+    }
+
+    /**
+     * Gets a transformer by index.
+     *
+     * @param index The index
+     * @return The transformer
+     */
+    Transformer get(int index) {
+        return transformers[index];
+    }
+
+    /**
+     * Finds the transformers that target a class.
+     *
+     * @param state The class
+     * @return The indices of the transformers, in registration order
+     */
+    int[] find(ClassState state) {
+        String name = state.getName();
+        int[] result = classes.get(name);
+        if (result == null) {
+            result = packages.find(name);
+            if (result == null) {
+                result = untargeted;
+            }
+        }
+        if (annotations.isEmpty()) {
+            return result;
+        }
+
+        BitSet merged = null;
+        for (String descriptor : state.getAnnotations()) {
+            int[] targeted = annotations.get(descriptor);
+            if (targeted != null) {
+                if (merged == null) {
+                    merged = new BitSet(transformers.length);
+                    for (int index : result) {
+                        merged.set(index);
+                    }
+                }
+                for (int index : targeted) {
+                    merged.set(index);
+                }
+            }
+        }
+        return merged == null ? result : toArray(merged);
+    }
+}
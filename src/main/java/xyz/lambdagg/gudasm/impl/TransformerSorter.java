@@ -0,0 +1,216 @@
+package xyz.lambdagg.gudasm.impl;
+
+import xyz.lambdagg.gudasm.api.v1.Identifier;
+import xyz.lambdagg.gudasm.api.v1.Transformer;
+import xyz.lambdagg.gudasm.api.v1.TransformerOrder;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Puts transformers in the order their phases and before/after constraints ask for.
+ * <p>
+ * Both phases and transformers get a topological sort, whenever there is a choice the one that was seen or registered
+ * first goes first. Phases are kept apart by a barrier node between each pair of neighbouring phases, so a constraint
+ * that goes against the phase order shows up as a cycle like any other.
+ */
+final class TransformerSorter {
+    private TransformerSorter() {
+    }
+
+    /**
+     * Sorts a list of transformers.
+     *
+     * @param transformers   The transformers, in registration order
+     * @param phaseOrderings Pairs of phases, the first of each runs before the second
+     * @return The sorted transformers
+     */
+    static List<Transformer> sort(List<Transformer> transformers, List<Identifier[]> phaseOrderings) {
+        int size = transformers.size();
+        if (size < 2) {
+            return new ArrayList<>(transformers);
+        }
+
+        TransformerOrder[] orders = new TransformerOrder[size];
+        List<Identifier> phases = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            orders[i] = transformers.get(i).getOrder();
+            if (orders[i] == null) {
+                orders[i] = TransformerOrder.getDefault();
+            }
+            if (!phases.contains(orders[i].getPhase())) {
+                phases.add(orders[i].getPhase());
+            }
+        }
+        for (Identifier[] ordering : phaseOrderings) {
+            for (Identifier phase : ordering) {
+                if (!phases.contains(phase)) {
+                    phases.add(phase);
+                }
+            }
+        }
+        List<Identifier> sortedPhases = sortPhases(phases, phaseOrderings);
+        Map<Identifier, Integer> phaseRanks = new HashMap<>();
+        for (int i = 0; i < sortedPhases.size(); i++) {
+            phaseRanks.put(sortedPhases.get(i), i);
+        }
+
+        // Transformers are nodes 0 until size, the barrier after phase i is node size + i
+        int nodes = size + sortedPhases.size() - 1;
+        List<Set<Integer>> edges = new ArrayList<>(nodes);
+        for (int i = 0; i < nodes; i++) {
+            edges.add(new LinkedHashSet<>());
+        }
+        int[] keys = new int[nodes];
+        Map<Identifier, List<Integer>> byName = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            int rank = phaseRanks.get(orders[i].getPhase());
+            keys[i] = rank * 2;
+            byName.computeIfAbsent(transformers.get(i).getName(), (key) -> new ArrayList<>()).add(i);
+            if (rank > 0) {
+                edges.get(size + rank - 1).add(i);
+            }
+            if (rank < sortedPhases.size() - 1) {
+                edges.get(i).add(size + rank);
+            }
+        }
+        for (int i = 0; i < sortedPhases.size() - 1; i++) {
+            keys[size + i] = i * 2 + 1;
+            if (i > 0) {
+                // Keeps empty phases in line
+                edges.get(size + i - 1).add(size + i);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            for (Identifier name : orders[i].getBefore()) {
+                for (int other : byName.getOrDefault(name, Collections.emptyList())) {
+                    edges.get(i).add(other);
+                }
+            }
+            for (Identifier name : orders[i].getAfter()) {
+                for (int other : byName.getOrDefault(name, Collections.emptyList())) {
+                    edges.get(other).add(i);
+                }
+            }
+        }
+
+        int[] order = topologicalSort(edges, (a, b) -> keys[a] != keys[b] ? Integer.compare(keys[a], keys[b]) : Integer.compare(a, b));
+        if (order == null) {
+            throw new RuntimeException("Transformer order has a cycle: " + describeCycle(edges, (node) -> {
+                if (node < size) {
+                    return transformers.get(node).getName().toString();
+                }
+                int phase = node - size;
+                return "[" + sortedPhases.get(phase) + " -> " + sortedPhases.get(phase + 1) + "]";
+            }));
+        }
+
+        List<Transformer> sorted = new ArrayList<>(size);
+        for (int node : order) {
+            if (node < size) {
+                sorted.add(transformers.get(node));
+            }
+        }
+        return sorted;
+    }
+
+    private static List<Identifier> sortPhases(List<Identifier> phases, List<Identifier[]> phaseOrderings) {
+        List<Set<Integer>> edges = new ArrayList<>(phases.size());
+        for (int i = 0; i < phases.size(); i++) {
+            edges.add(new LinkedHashSet<>());
+        }
+        for (Identifier[] ordering : phaseOrderings) {
+            edges.get(phases.indexOf(ordering[0])).add(phases.indexOf(ordering[1]));
+        }
+
+        int[] order = topologicalSort(edges, Integer::compare);
+        if (order == null) {
+            throw new RuntimeException("Transformer phases have a cycle: " + describeCycle(edges, (node) -> phases.get(node).toString()));
+        }
+        List<Identifier> sorted = new ArrayList<>(phases.size());
+        for (int node : order) {
+            sorted.add(phases.get(node));
+        }
+        return sorted;
+    }
+
+    // Kahn's algorithm, the ready node that compares lowest goes next. Returns null if there is a cycle.
+    private static int[] topologicalSort(List<Set<Integer>> edges, Comparator<Integer> priority) {
+        int nodes = edges.size();
+        int[] incoming = new int[nodes];
+        for (Set<Integer> targets : edges) {
+            for (int target : targets) {
+                incoming[target]++;
+            }
+        }
+        PriorityQueue<Integer> ready = new PriorityQueue<>(priority);
+        for (int i = 0; i < nodes; i++) {
+            if (incoming[i] == 0) {
+                ready.add(i);
+            }
+        }
+
+        int[] order = new int[nodes];
+        int count = 0;
+        while (!ready.isEmpty()) {
+            int node = ready.poll();
+            order[count++] = node;
+            for (int target : edges.get(node)) {
+                if (--incoming[target] == 0) {
+                    ready.add(target);
+                }
+            }
+        }
+        return count == nodes ? order : null;
+    }
+
+    private static String describeCycle(List<Set<Integer>> edges, IntFunction<String> names) {
+        int nodes = edges.size();
+        int[] state = new int[nodes];
+        Deque<Integer> path = new ArrayDeque<>();
+        for (int i = 0; i < nodes; i++) {
+            List<Integer> cycle = findCycle(i, edges, state, path);
+            if (cycle != null) {
+                StringJoiner joiner = new StringJoiner(" -> ");
+                for (int node : cycle) {
+                    joiner.add(names.apply(node));
+                }
+                return joiner.toString();
+            }
+        }
+        return "unknown";
+    }
+
+    // Depth first search, state is 0 for unseen, 1 for on the path and 2 for done
+    private static List<Integer> findCycle(int node, List<Set<Integer>> edges, int[] state, Deque<Integer> path) {
+        if (state[node] == 2) {
+            return null;
+        }
+        if (state[node] == 1) {
+            List<Integer> cycle = new ArrayList<>();
+            Iterator<Integer> iterator = path.descendingIterator();
+            boolean started = false;
+            while (iterator.hasNext()) {
+                int current = iterator.next();
+                started |= current == node;
+                if (started) {
+                    cycle.add(current);
+                }
+            }
+            cycle.add(node);
+            return cycle;
+        }
+
+        state[node] = 1;
+        path.push(node);
+        for (int target : edges.get(node)) {
+            List<Integer> cycle = findCycle(target, edges, state, path);
+            if (cycle != null) {
+                return cycle;
+            }
+        }
+        path.pop();
+        state[node] = 2;
+        return null;
+    }
+}
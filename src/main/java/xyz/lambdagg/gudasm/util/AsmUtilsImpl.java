@@ -162,15 +162,15 @@ public class AsmUtilsImpl {
     }
 
     // This is kinda nasty, but could be worse
-    private static BooleanFunction<AbstractInsnNode> getMethodChecker(int flags, int opcode, @NotNull MethodType type) {
+    public static BooleanFunction<AbstractInsnNode> getMethodChecker(int flags, int opcode, @NotNull MethodType type) {
         boolean ignoreOpcode = checkFlag(AsmUtils.METHOD_FLAG_IGNORE_OPCODE, flags) || opcode == -1;
         boolean ignoreOwner = checkFlag(AsmUtils.METHOD_FLAG_IGNORE_OWNER, flags);
         boolean ignoreName = checkFlag(AsmUtils.METHOD_FLAG_IGNORE_NAME, flags);
         boolean ignoreDesc = checkFlag(AsmUtils.METHOD_FLAG_IGNORE_DESCRIPTION, flags);
 
-        String owner = type.getOwner().getInternalName();
-        String name = type.getName();
-        String description = type.getDescriptor().getDescriptor();
+        String owner = SymbolTable.intern(type.getOwner().getInternalName());
+        String name = SymbolTable.intern(type.getName());
+        String description = SymbolTable.intern(type.getDescriptor().getDescriptor());
 
         if (ignoreOpcode) {
             if (ignoreOwner) {
@@ -180,19 +180,19 @@ public class AsmUtilsImpl {
                     } else {
                         return (node) ->
                                 METHOD_OPCODES.contains(node.getOpcode()) &&
-                                        description.equals(((MethodInsnNode) node).desc);
+                                        SymbolTable.equals(description, ((MethodInsnNode) node).desc);
                     }
                 } else {
                     if (ignoreDesc) {
                         return (node) ->
                                 METHOD_OPCODES.contains(node.getOpcode()) &&
-                                        name.equals(((MethodInsnNode) node).name);
+                                        SymbolTable.equals(name, ((MethodInsnNode) node).name);
                     } else {
                         return (node) -> {
                             if (METHOD_OPCODES.contains(node.getOpcode())) {
                                 MethodInsnNode method = (MethodInsnNode) node;
-                                return name.equals(method.name) &&
-                                        description.equals(method.desc);
+                                return SymbolTable.equals(name, method.name) &&
+                                        SymbolTable.equals(description, method.desc);
                             } else {
                                 return false;
                             }
@@ -204,13 +204,13 @@ public class AsmUtilsImpl {
                     if (ignoreDesc) {
                         return (node) ->
                                 METHOD_OPCODES.contains(node.getOpcode()) &&
-                                        owner.equals(((MethodInsnNode) node).owner);
+                                        SymbolTable.equals(owner, ((MethodInsnNode) node).owner);
                     } else {
                         return (node) -> {
                             if (METHOD_OPCODES.contains(node.getOpcode())) {
                                 MethodInsnNode method = (MethodInsnNode) node;
-                                return description.equals(method.desc) &&
-                                        owner.equals(method.owner);
+                                return SymbolTable.equals(description, method.desc) &&
+                                        SymbolTable.equals(owner, method.owner);
                             } else {
                                 return false;
                             }
@@ -221,8 +221,8 @@ public class AsmUtilsImpl {
                         return (node) -> {
                             if (METHOD_OPCODES.contains(node.getOpcode())) {
                                 MethodInsnNode method = (MethodInsnNode) node;
-                                return name.equals(method.name) &&
-                                        owner.equals(method.owner);
+                                return SymbolTable.equals(name, method.name) &&
+                                        SymbolTable.equals(owner, method.owner);
                             } else {
                                 return false;
                             }
@@ -231,9 +231,9 @@ public class AsmUtilsImpl {
                         return (node) -> {
                             if (METHOD_OPCODES.contains(node.getOpcode())) {
                                 MethodInsnNode method = (MethodInsnNode) node;
-                                return name.equals(method.name) &&
-                                        owner.equals(method.owner) &&
-                                        description.equals(method.desc);
+                                return SymbolTable.equals(name, method.name) &&
+                                        SymbolTable.equals(owner, method.owner) &&
+                                        SymbolTable.equals(description, method.desc);
                             } else {
                                 return false;
                             }
@@ -249,19 +249,19 @@ public class AsmUtilsImpl {
                     } else {
                         return (node) ->
                                 opcode == node.getOpcode() &&
-                                        description.equals(((MethodInsnNode) node).desc);
+                                        SymbolTable.equals(description, ((MethodInsnNode) node).desc);
                     }
                 } else {
                     if (ignoreDesc) {
                         return (node) ->
                                 opcode == node.getOpcode() &&
-                                        name.equals(((MethodInsnNode) node).name);
+                                        SymbolTable.equals(name, ((MethodInsnNode) node).name);
                     } else {
                         return (node) -> {
                             if (opcode == node.getOpcode()) {
                                 MethodInsnNode method = (MethodInsnNode) node;
-                                return name.equals(method.name) &&
-                                        description.equals(method.desc);
+                                return SymbolTable.equals(name, method.name) &&
+                                        SymbolTable.equals(description, method.desc);
                             } else {
                                 return false;
                             }
@@ -273,13 +273,13 @@ public class AsmUtilsImpl {
                     if (ignoreDesc) {
                         return (node) ->
                                 opcode == node.getOpcode() &&
-                                        owner.equals(((MethodInsnNode) node).owner);
+                                        SymbolTable.equals(owner, ((MethodInsnNode) node).owner);
                     } else {
                         return (node) -> {
                             if (opcode == node.getOpcode()) {
                                 MethodInsnNode method = (MethodInsnNode) node;
-                                return description.equals(method.desc) &&
-                                        owner.equals(method.owner);
+                                return SymbolTable.equals(description, method.desc) &&
+                                        SymbolTable.equals(owner, method.owner);
                             } else {
                                 return false;
                             }
@@ -290,8 +290,8 @@ public class AsmUtilsImpl {
                         return (node) -> {
                             if (opcode == node.getOpcode()) {
                                 MethodInsnNode method = (MethodInsnNode) node;
-                                return name.equals(method.name) &&
-                                        owner.equals(method.owner);
+                                return SymbolTable.equals(name, method.name) &&
+                                        SymbolTable.equals(owner, method.owner);
                             } else {
                                 return false;
                             }
@@ -300,9 +300,9 @@ public class AsmUtilsImpl {
                         return (node) -> {
                             if (opcode == node.getOpcode()) {
                                 MethodInsnNode method = (MethodInsnNode) node;
-                                return name.equals(method.name) &&
-                                        owner.equals(method.owner) &&
-                                        description.equals(method.desc);
+                                return SymbolTable.equals(name, method.name) &&
+                                        SymbolTable.equals(owner, method.owner) &&
+                                        SymbolTable.equals(description, method.desc);
                             } else {
                                 return false;
                             }
@@ -313,15 +313,15 @@ public class AsmUtilsImpl {
         }
     }
 
-    private static BooleanFunction<AbstractInsnNode> getFieldChecker(int flags, int opcode, @NotNull FieldType type) {
+    public static BooleanFunction<AbstractInsnNode> getFieldChecker(int flags, int opcode, @NotNull FieldType type) {
         boolean ignoreOpcode = checkFlag(AsmUtils.FIELD_FLAG_IGNORE_OPCODE, flags) || opcode == -1;
         boolean ignoreOwner = checkFlag(AsmUtils.FIELD_FLAG_IGNORE_OWNER, flags);
         boolean ignoreName = checkFlag(AsmUtils.FIELD_FLAG_IGNORE_NAME, flags);
         boolean ignoreDesc = checkFlag(AsmUtils.FIELD_FLAG_IGNORE_DESCRIPTION, flags);
 
-        String owner = type.getOwner().getInternalName();
-        String name = type.getName();
-        String description = type.getDescriptor().getDescriptor();
+        String owner = SymbolTable.intern(type.getOwner().getInternalName());
+        String name = SymbolTable.intern(type.getName());
+        String description = SymbolTable.intern(type.getDescriptor().getDescriptor());
 
         if (ignoreOpcode) {
             if (ignoreOwner) {
@@ -331,19 +331,19 @@ public class AsmUtilsImpl {
                     } else {
                         return (node) ->
                                 FIELD_OPCODES.contains(node.getOpcode()) &&
-                                        description.equals(((FieldInsnNode) node).desc);
+                                        SymbolTable.equals(description, ((FieldInsnNode) node).desc);
                     }
                 } else {
                     if (ignoreDesc) {
                         return (node) ->
                                 FIELD_OPCODES.contains(node.getOpcode()) &&
-                                        name.equals(((FieldInsnNode) node).name);
+                                        SymbolTable.equals(name, ((FieldInsnNode) node).name);
                     } else {
                         return (node) -> {
                             if (FIELD_OPCODES.contains(node.getOpcode())) {
                                 FieldInsnNode field = (FieldInsnNode) node;
-                                return name.equals(field.name) &&
-                                        description.equals(field.desc);
+                                return SymbolTable.equals(name, field.name) &&
+                                        SymbolTable.equals(description, field.desc);
                             } else {
                                 return false;
                             }
@@ -355,13 +355,13 @@ public class AsmUtilsImpl {
                     if (ignoreDesc) {
                         return (node) ->
                                 FIELD_OPCODES.contains(node.getOpcode()) &&
-                                        owner.equals(((FieldInsnNode) node).owner);
+                                        SymbolTable.equals(owner, ((FieldInsnNode) node).owner);
                     } else {
                         return (node) -> {
                             if (FIELD_OPCODES.contains(node.getOpcode())) {
                                 FieldInsnNode field = (FieldInsnNode) node;
-                                return description.equals(field.desc) &&
-                                        owner.equals(field.owner);
+                                return SymbolTable.equals(description, field.desc) &&
+                                        SymbolTable.equals(owner, field.owner);
                             } else {
                                 return false;
                             }
@@ -372,8 +372,8 @@ public class AsmUtilsImpl {
                         return (node) -> {
                             if (FIELD_OPCODES.contains(node.getOpcode())) {
                                 FieldInsnNode field = (FieldInsnNode) node;
-                                return name.equals(field.name) &&
-                                        owner.equals(field.owner);
+                                return SymbolTable.equals(name, field.name) &&
+                                        SymbolTable.equals(owner, field.owner);
                             } else {
                                 return false;
                             }
@@ -382,9 +382,9 @@ public class AsmUtilsImpl {
                         return (node) -> {
                             if (FIELD_OPCODES.contains(node.getOpcode())) {
                                 FieldInsnNode field = (FieldInsnNode) node;
-                                return name.equals(field.name) &&
-                                        owner.equals(field.owner) &&
-                                        description.equals(field.desc);
+                                return SymbolTable.equals(name, field.name) &&
+                                        SymbolTable.equals(owner, field.owner) &&
+                                        SymbolTable.equals(description, field.desc);
                             } else {
                                 return false;
                             }
@@ -400,19 +400,19 @@ public class AsmUtilsImpl {
                     } else {
                         return (node) ->
                                 opcode == node.getOpcode() &&
-                                        description.equals(((FieldInsnNode) node).desc);
+                                        SymbolTable.equals(description, ((FieldInsnNode) node).desc);
                     }
                 } else {
                     if (ignoreDesc) {
                         return (node) ->
                                 opcode == node.getOpcode() &&
-                                        name.equals(((FieldInsnNode) node).name);
+                                        SymbolTable.equals(name, ((FieldInsnNode) node).name);
                     } else {
                         return (node) -> {
                             if (opcode == node.getOpcode()) {
                                 FieldInsnNode field = (FieldInsnNode) node;
-                                return name.equals(field.name) &&
-                                        description.equals(field.desc);
+                                return SymbolTable.equals(name, field.name) &&
+                                        SymbolTable.equals(description, field.desc);
                             } else {
                                 return false;
                             }
@@ -424,13 +424,13 @@ public class AsmUtilsImpl {
                     if (ignoreDesc) {
                         return (node) ->
                                 opcode == node.getOpcode() &&
-                                        owner.equals(((FieldInsnNode) node).owner);
+                                        SymbolTable.equals(owner, ((FieldInsnNode) node).owner);
                     } else {
                         return (node) -> {
                             if (opcode == node.getOpcode()) {
                                 FieldInsnNode field = (FieldInsnNode) node;
-                                return description.equals(field.desc) &&
-                                        owner.equals(field.owner);
+                                return SymbolTable.equals(description, field.desc) &&
+                                        SymbolTable.equals(owner, field.owner);
                             } else {
                                 return false;
                             }
@@ -441,8 +441,8 @@ public class AsmUtilsImpl {
                         return (node) -> {
                             if (opcode == node.getOpcode()) {
                                 FieldInsnNode field = (FieldInsnNode) node;
-                                return name.equals(field.name) &&
-                                        owner.equals(field.owner);
+                                return SymbolTable.equals(name, field.name) &&
+                                        SymbolTable.equals(owner, field.owner);
                             } else {
                                 return false;
                             }
@@ -451,9 +451,9 @@ public class AsmUtilsImpl {
                         return (node) -> {
                             if (opcode == node.getOpcode()) {
                                 FieldInsnNode field = (FieldInsnNode) node;
-                                return name.equals(field.name) &&
-                                        owner.equals(field.owner) &&
-                                        description.equals(field.desc);
+                                return SymbolTable.equals(name, field.name) &&
+                                        SymbolTable.equals(owner, field.owner) &&
+                                        SymbolTable.equals(description, field.desc);
                             } else {
                                 return false;
                             }
@@ -0,0 +1,164 @@
+package xyz.lambdagg.gudasm.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A 128 bit hash of some bytes, used to key cached classes.
+ * <p>
+ * This is MurmurHash3 (x64, 128 bit), it's fast and good enough to tell classes apart.
+ */
+public final class ClassHash {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long C1 = 0x87C37B91114253D5L;
+    private static final long C2 = 0x4CF5AD432745937FL;
+
+    private final long high;
+    private final long low;
+
+    public ClassHash(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Hashes a byte array.
+     *
+     * @param data The bytes to hash
+     * @return The hash
+     */
+    public static ClassHash of(byte[] data) {
+        return of(data, 0);
+    }
+
+    /**
+     * Hashes a byte array with a seed.
+     *
+     * @param data The bytes to hash
+     * @param seed The seed
+     * @return The hash
+     */
+    public static ClassHash of(byte[] data, long seed) {
+        long h1 = seed;
+        long h2 = seed;
+        int length = data.length;
+        int blocks = length & ~15;
+
+        for (int i = 0; i < blocks; i += 16) {
+            long k1 = (long) LONGS.get(data, i);
+            long k2 = (long) LONGS.get(data, i + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52DCE729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495AB5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        switch (length & 15) {
+            case 15: k2 ^= (long) (data[blocks + 14] & 0xFF) << 48;
+            case 14: k2 ^= (long) (data[blocks + 13] & 0xFF) << 40;
+            case 13: k2 ^= (long) (data[blocks + 12] & 0xFF) << 32;
+            case 12: k2 ^= (long) (data[blocks + 11] & 0xFF) << 24;
+            case 11: k2 ^= (long) (data[blocks + 10] & 0xFF) << 16;
+            case 10: k2 ^= (long) (data[blocks + 9] & 0xFF) << 8;
+            case 9:
+                k2 ^= data[blocks + 8] & 0xFF;
+                h2 ^= mixK2(k2);
+            case 8: k1 ^= (long) (data[blocks + 7] & 0xFF) << 56;
+            case 7: k1 ^= (long) (data[blocks + 6] & 0xFF) << 48;
+            case 6: k1 ^= (long) (data[blocks + 5] & 0xFF) << 40;
+            case 5: k1 ^= (long) (data[blocks + 4] & 0xFF) << 32;
+            case 4: k1 ^= (long) (data[blocks + 3] & 0xFF) << 24;
+            case 3: k1 ^= (long) (data[blocks + 2] & 0xFF) << 16;
+            case 2: k1 ^= (long) (data[blocks + 1] & 0xFF) << 8;
+            case 1:
+                k1 ^= data[blocks] & 0xFF;
+                h1 ^= mixK1(k1);
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+
+        return new ClassHash(h1, h2);
+    }
+
+    /**
+     * Hashes a string, mostly for building fingerprints.
+     *
+     * @param string The string to hash
+     * @return The hash
+     */
+    public static ClassHash of(String string) {
+        return of(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ClassHash that = (ClassHash) o;
+        return high == that.high &&
+                low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
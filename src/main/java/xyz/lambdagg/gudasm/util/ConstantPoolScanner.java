@@ -0,0 +1,156 @@
+package xyz.lambdagg.gudasm.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Looks for strings in the constant pool of a class file without parsing the rest of it.
+ * <p>
+ * Annotations, descriptors and names all end up as UTF8 constants, if a string is not in the constant pool nothing in
+ * the class can refer to it.
+ */
+public final class ConstantPoolScanner {
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private ConstantPoolScanner() {
+    }
+
+    /**
+     * Encodes a string the way the constant pool stores it.
+     *
+     * @param value The string
+     * @return The modified UTF-8 bytes
+     */
+    public static byte[] encode(String value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length() + 2);
+        try (DataOutputStream stream = new DataOutputStream(bytes)) {
+            stream.writeUTF(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Drop the length
+        return Arrays.copyOfRange(bytes.toByteArray(), 2, bytes.size());
+    }
+
+    /**
+     * Checks if a class file has a string as a UTF8 constant.
+     *
+     * @param classFile The class file
+     * @param value     The {@link #encode(String) encoded} string
+     * @return True if it is in the constant pool, or if the constant pool could not be read
+     */
+    public static boolean contains(byte[] classFile, byte[] value) {
+        return scan(classFile, null, value);
+    }
+
+    /**
+     * Checks if a class file has any of a set of strings as a UTF8 constant.
+     *
+     * @param classFile The class file
+     * @param values    The {@link #encode(String) encoded} strings
+     * @return True if any of them are in the constant pool, or if the constant pool could not be read
+     */
+    public static boolean containsAny(byte[] classFile, byte[][] values) {
+        if (values.length == 0) {
+            return false;
+        }
+        return scan(classFile, values, null);
+    }
+
+    // Walks the constant pool in place, this runs for every class so it doesn't allocate anything
+    private static boolean scan(byte[] classFile, byte[][] values, byte[] value) {
+        if (classFile.length < 10) {
+            return true;
+        }
+        int count = readUnsignedShort(classFile, 8);
+        int offset = 10;
+        for (int i = 1; i < count; i++) {
+            if (offset >= classFile.length) {
+                return true;
+            }
+            int size;
+            switch (classFile[offset]) {
+                case UTF8:
+                    if (offset + 3 > classFile.length) {
+                        return true;
+                    }
+                    int length = readUnsignedShort(classFile, offset + 1);
+                    int start = offset + 3;
+                    if (start + length > classFile.length) {
+                        return true;
+                    }
+                    if (value != null) {
+                        if (matches(classFile, start, length, value)) {
+                            return true;
+                        }
+                    } else {
+                        for (byte[] candidate : values) {
+                            if (matches(classFile, start, length, candidate)) {
+                                return true;
+                            }
+                        }
+                    }
+                    size = 3 + length;
+                    break;
+                case CLASS:
+                case STRING:
+                case METHOD_TYPE:
+                case MODULE:
+                case PACKAGE:
+                    size = 3;
+                    break;
+                case METHOD_HANDLE:
+                    size = 4;
+                    break;
+                case INTEGER:
+                case FLOAT:
+                case FIELD_REF:
+                case METHOD_REF:
+                case INTERFACE_METHOD_REF:
+                case NAME_AND_TYPE:
+                case DYNAMIC:
+                case INVOKE_DYNAMIC:
+                    size = 5;
+                    break;
+                case LONG:
+                case DOUBLE:
+                    // Takes up two slots
+                    size = 9;
+                    i++;
+                    break;
+                default:
+                    // Something newer than we know about, let the caller take the slow path
+                    return true;
+            }
+            offset += size;
+        }
+        return false;
+    }
+
+    private static boolean matches(byte[] classFile, int start, int length, byte[] value) {
+        return value.length == length && Arrays.equals(classFile, start, start + length, value, 0, length);
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+}
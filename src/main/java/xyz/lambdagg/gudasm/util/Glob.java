@@ -0,0 +1,64 @@
+package xyz.lambdagg.gudasm.util;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A string pattern where {@code *} matches any run of characters, including none.
+ * <p>
+ * Patterns without a {@code *} are kept in the {@link SymbolTable}, so matching them against interned symbols is a
+ * reference check.
+ */
+public final class Glob {
+    private static final Glob ANY = new Glob(null);
+
+    private final String[] parts;
+
+    private Glob(String[] parts) {
+        this.parts = parts;
+    }
+
+    /**
+     * Creates a glob.
+     *
+     * @param pattern The pattern, null matches everything
+     * @return The glob
+     */
+    public static Glob of(@Nullable String pattern) {
+        if (pattern == null || pattern.equals("*")) {
+            return ANY;
+        }
+        String[] parts = pattern.split("\\*", -1);
+        if (parts.length == 1) {
+            parts[0] = SymbolTable.intern(parts[0]);
+        }
+        return new Glob(parts);
+    }
+
+    /**
+     * Checks if a string matches this glob.
+     *
+     * @param value The string
+     * @return True if the whole string matches
+     */
+    public boolean matches(String value) {
+        if (parts == null) {
+            return true;
+        }
+        if (parts.length == 1) {
+            return SymbolTable.equals(parts[0], value);
+        }
+        if (!value.startsWith(parts[0])) {
+            return false;
+        }
+        int position = parts[0].length();
+        for (int i = 1; i < parts.length - 1; i++) {
+            int index = value.indexOf(parts[i], position);
+            if (index == -1) {
+                return false;
+            }
+            position = index + parts[i].length();
+        }
+        String last = parts[parts.length - 1];
+        return value.length() - last.length() >= position && value.endsWith(last);
+    }
+}
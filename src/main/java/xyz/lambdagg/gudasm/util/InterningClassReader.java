@@ -0,0 +1,36 @@
+package xyz.lambdagg.gudasm.util;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * A class reader that puts every string it reads into the {@link SymbolTable}.
+ * <p>
+ * ASM reads every owner, name and descriptor through {@link #readUTF8(int, char[])}. The interned strings are kept
+ * per constant pool entry, so each entry only gets looked up in the table once per class.
+ */
+public class InterningClassReader extends ClassReader {
+    private String[] symbols;
+
+    public InterningClassReader(byte[] classFile) {
+        super(classFile);
+    }
+
+    @Override
+    public String readUTF8(int offset, char[] charBuffer) {
+        String value = super.readUTF8(offset, charBuffer);
+        if (value == null) {
+            return null;
+        }
+        // ClassReader reads the bootstrap methods from its constructor, before any field of this class is set
+        if (symbols == null) {
+            symbols = new String[getItemCount()];
+        }
+        int index = readUnsignedShort(offset);
+        String symbol = symbols[index];
+        if (symbol == null) {
+            symbol = SymbolTable.intern(value);
+            symbols[index] = symbol;
+        }
+        return symbol;
+    }
+}
@@ -0,0 +1,60 @@
+package xyz.lambdagg.gudasm.util;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A thread safe set of packages that can be matched against class names.
+ * <p>
+ * Lookups go through a {@link PackageTrie} and never lock, adding a package builds a new trie and swaps it in. Adding
+ * packages is expected to be rare compared to lookups.
+ */
+public final class PackageSet {
+    private final Set<String> packages = new LinkedHashSet<>();
+    private volatile PackageTrie<Boolean> trie = new PackageTrie<>();
+
+    public PackageSet(String... packages) {
+        for (String name : packages) {
+            add(name);
+        }
+    }
+
+    /**
+     * Adds a package to this set.
+     *
+     * @param packageName The package, trailing dots are ignored
+     * @return True if the package was not already present
+     */
+    public synchronized boolean add(String packageName) {
+        if (!packages.add(packageName)) {
+            return false;
+        }
+
+        PackageTrie<Boolean> trie = new PackageTrie<>();
+        for (String name : packages) {
+            trie.put(name, Boolean.TRUE);
+        }
+        this.trie = trie;
+        return true;
+    }
+
+    /**
+     * Checks if a class is in any of the packages of this set or their sub-packages.
+     *
+     * @param className The name of the class
+     * @return True if the class is in this set
+     */
+    public boolean matches(String className) {
+        return trie.matches(className);
+    }
+
+    /**
+     * Gets a snapshot of the packages in this set.
+     *
+     * @return The packages
+     */
+    public synchronized Set<String> getPackages() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(packages));
+    }
+}
@@ -0,0 +1,146 @@
+package xyz.lambdagg.gudasm.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A trie of package names.
+ * <p>
+ * A package matches itself and every package below it, lookups take time proportional to the length of the name no
+ * matter how many packages are in the trie. Names may use dots or slashes.
+ *
+ * @param <T> The type of the values
+ */
+public final class PackageTrie<T> {
+    private final Node<T> root = new Node<>();
+    private int size = 0;
+
+    /**
+     * Adds a package to the trie, replacing the value if it was already present.
+     *
+     * @param packageName The package, an empty name matches everything
+     * @param value       The value
+     * @return The old value, if any
+     */
+    @Nullable
+    public T put(String packageName, T value) {
+        Node<T> node = root;
+        int length = trimmedLength(packageName);
+        for (int i = 0; i < length; i++) {
+            node = node.getOrCreate(normalize(packageName.charAt(i)));
+        }
+        T old = node.value;
+        node.value = value;
+        if (old == null) {
+            size++;
+        }
+        return old;
+    }
+
+    /**
+     * Gets the value of exactly this package.
+     *
+     * @param packageName The package
+     * @return The value, or null if absent
+     */
+    @Nullable
+    public T get(String packageName) {
+        Node<T> node = root;
+        int length = trimmedLength(packageName);
+        for (int i = 0; i < length && node != null; i++) {
+            node = node.get(normalize(packageName.charAt(i)));
+        }
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Finds the value of the most specific package that contains a class.
+     *
+     * @param className The name of the class
+     * @return The value, or null if no package matches
+     */
+    @Nullable
+    public T find(String className) {
+        Node<T> node = root;
+        T value = root.value;
+        int length = className.length();
+        for (int i = 0; i < length; i++) {
+            char c = normalize(className.charAt(i));
+            if (c == '.' && node.value != null && node != root) {
+                value = node.value;
+            }
+            node = node.get(c);
+            if (node == null) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Checks if any package in the trie contains a class.
+     *
+     * @param className The name of the class
+     * @return True if a package matches
+     */
+    public boolean matches(String className) {
+        return find(className) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static int trimmedLength(String packageName) {
+        int length = packageName.length();
+        while (length > 0 && normalize(packageName.charAt(length - 1)) == '.') {
+            length--;
+        }
+        return length;
+    }
+
+    private static char normalize(char c) {
+        return c == '/' ? '.' : c;
+    }
+
+    private static final class Node<T> {
+        private char[] keys = new char[0];
+        @SuppressWarnings("unchecked")
+        private Node<T>[] children = new Node[0];
+        private T value;
+
+        @Nullable
+        Node<T> get(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index < 0 ? null : children[index];
+        }
+
+        Node<T> getOrCreate(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            index = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            @SuppressWarnings("unchecked")
+            Node<T>[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+
+            Node<T> node = new Node<>();
+            newKeys[index] = key;
+            newChildren[index] = node;
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+    }
+}
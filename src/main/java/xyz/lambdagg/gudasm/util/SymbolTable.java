@@ -0,0 +1,84 @@
+package xyz.lambdagg.gudasm.util;
+
+import xyz.lambdagg.gudasm.impl.Configuration;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A shared table of owner, name and descriptor strings.
+ * <p>
+ * When symbol interning is enabled classes are parsed with an {@link InterningClassReader}, so every instruction that
+ * refers to the same symbol shares one string instance and matching them is a reference check. Strings that didn't
+ * come from the table still compare correctly, just without the shortcut.
+ * <p>
+ * The table only holds its strings weakly, a symbol goes away once no tree or matcher uses it anymore. It is split
+ * into stripes so class loading threads don't all wait on one lock.
+ */
+public final class SymbolTable {
+    private static final int STRIPES = 16;
+
+    @SuppressWarnings("unchecked")
+    private static final Map<String, WeakReference<String>>[] SYMBOLS = new Map[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            SYMBOLS[i] = new WeakHashMap<>();
+        }
+    }
+
+    private SymbolTable() {
+    }
+
+    /**
+     * Gets the shared instance of a string.
+     *
+     * @param symbol The string
+     * @return The shared string, or the string itself if symbol interning is disabled
+     */
+    public static String intern(String symbol) {
+        if (symbol == null || !Configuration.INTERN_SYMBOLS.get()) {
+            return symbol;
+        }
+        Map<String, WeakReference<String>> symbols = SYMBOLS[symbol.hashCode() & (STRIPES - 1)];
+        synchronized (symbols) {
+            WeakReference<String> reference = symbols.get(symbol);
+            String existing = reference == null ? null : reference.get();
+            if (existing != null) {
+                return existing;
+            }
+            symbols.put(symbol, new WeakReference<>(symbol));
+            return symbol;
+        }
+    }
+
+    /**
+     * Compares two symbols.
+     * <p>
+     * Interned symbols that match are the same instance, most others are told apart by their cached hash codes without
+     * looking at the characters.
+     *
+     * @param a The first symbol
+     * @param b The second symbol
+     * @return True if they are equal
+     */
+    public static boolean equals(String a, String b) {
+        return a == b || (a != null && b != null && a.hashCode() == b.hashCode() && a.equals(b));
+    }
+
+    /**
+     * Gets the number of symbols in the table.
+     *
+     * @return The size
+     */
+    public static int size() {
+        int size = 0;
+        for (Map<String, WeakReference<String>> symbols : SYMBOLS) {
+            synchronized (symbols) {
+                size += symbols.size();
+            }
+        }
+        return size;
+    }
+}
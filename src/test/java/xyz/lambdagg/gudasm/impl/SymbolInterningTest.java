@@ -0,0 +1,44 @@
+package xyz.lambdagg.gudasm.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolInterningTest {
+    @BeforeEach
+    void enableInterning() {
+        Configuration.INTERN_SYMBOLS.parse("true");
+    }
+
+    @AfterEach
+    void disableInterning() {
+        Configuration.INTERN_SYMBOLS.parse("false");
+    }
+
+    @Test
+    void parsesClassesWithInvokedynamic() throws IOException {
+        // String uses invokedynamic for its lambdas, its bootstrap methods are read before the reader is set up
+        byte[] bytes = readClass("java/lang/String");
+        ClassState first = new ClassState("java.lang.String", "java.lang.String", bytes);
+        ClassState second = new ClassState("java.lang.String", "java.lang.String", bytes);
+
+        MethodNode firstMethod = first.getNode().methods.get(0);
+        MethodNode secondMethod = second.getNode().methods.get(0);
+        assertEquals(firstMethod.desc, secondMethod.desc);
+        assertSame(firstMethod.desc, secondMethod.desc);
+        assertSame(first.getNode().superName, second.getNode().superName);
+    }
+
+    private static byte[] readClass(String name) throws IOException {
+        try (InputStream stream = Object.class.getResourceAsStream('/' + name + ".class")) {
+            assertNotNull(stream, name);
+            return stream.readAllBytes();
+        }
+    }
+}